@@ -1,11 +1,15 @@
 CMD_OPEN_CAMERA = "OPEN_CAMERA"
 CMD_TAKE_PHOTO = "TAKE_PHOTO"
 CMD_GET_PROP = "GET_PROP"
+CMD_STATS = "STATS"
+CMD_LIST_CAMERAS = "LIST_CAMERAS"
 
 COMMANDS = {
     "1": ("Opening the camera...", CMD_OPEN_CAMERA),
     "2": ("Taking a photo...", CMD_TAKE_PHOTO),
     "3": ("Fetching device properties...", CMD_GET_PROP),
+    "4": ("Fetching server connection stats...", CMD_STATS),
+    "5": ("Listing cameras...", CMD_LIST_CAMERAS),
 }
 
 HOST = '10.100.102.20'
@@ -9,7 +9,9 @@ def show_menu():
     print("1 - Open the camera")
     print("2 - Take a photo")
     print("3 - Get device properties")
-    print("4 - Exit")
+    print("4 - Get server connection stats")
+    print("5 - List cameras")
+    print("6 - Exit")
 
 
 def message_input():
@@ -18,7 +20,7 @@ def message_input():
         show_menu()
         user_input = input(">> ").strip()
 
-        if user_input in ['4', 'exit']:
+        if user_input in ['6', 'exit']:
             print(" Exiting...")
             break
         elif user_input in COMMANDS:
@@ -0,0 +1,118 @@
+package com.example.remoteapp;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads newline-terminated commands from a socket while enforcing a maximum line length,
+ * a per-read timeout and an overall deadline for the whole line.
+ * Unlike BufferedReader.readLine(), a client can neither block the reader forever
+ * nor make it buffer an unbounded amount of data.
+ */
+public class BoundedLineReader {
+
+    /** Thrown when a line is longer than the configured maximum. */
+    public static class LineTooLongException extends IOException {
+        public LineTooLongException(int maxLength) {
+            super("Command exceeds " + maxLength + " bytes");
+        }
+    }
+
+    /** Thrown when the whole line did not arrive before the deadline, even if the client kept sending. */
+    public static class DeadlineExceededException extends SocketTimeoutException {
+        public DeadlineExceededException(int deadlineMs) {
+            super("Command not received within " + deadlineMs + " ms");
+        }
+    }
+
+    private final Socket socket;
+    private final InputStream in;
+    private final byte[] lineBuffer;
+
+    /**
+     * @param socket The client socket to read from.
+     * @param maxLength Maximum line length in bytes, excluding the line terminator.
+     * @throws IOException If the socket input stream cannot be opened.
+     */
+    public BoundedLineReader(Socket socket, int maxLength) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.lineBuffer = new byte[maxLength];
+    }
+
+    /**
+     * Reads one line.
+     *
+     * @param readTimeoutMs Maximum silence allowed between two reads.
+     * @param deadlineMs Maximum time allowed for the whole line.
+     * @return The line without its terminator, or null if the client closed the stream first.
+     * @throws LineTooLongException If the line exceeds the maximum length.
+     * @throws DeadlineExceededException If the deadline passes before the line is complete.
+     * @throws SocketTimeoutException If the client stays silent longer than readTimeoutMs.
+     */
+    public String readLine(int readTimeoutMs, int deadlineMs) throws IOException {
+        long deadline = System.nanoTime() + deadlineMs * 1_000_000L;
+        int length = 0;
+        while (true) {
+            long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+            if (remainingMs <= 0) {
+                throw new DeadlineExceededException(deadlineMs);
+            }
+            boolean deadlineBound = remainingMs < readTimeoutMs;
+            socket.setSoTimeout((int) Math.min(remainingMs, readTimeoutMs));
+            int b;
+            try {
+                b = in.read();
+            } catch (SocketTimeoutException e) {
+                if (deadlineBound) {
+                    throw new DeadlineExceededException(deadlineMs);
+                }
+                throw e;
+            }
+            if (b == -1) {
+                return length == 0 ? null : decode(length);
+            }
+            if (b == '\n') {
+                return decode(length);
+            }
+            if (length == lineBuffer.length) {
+                throw new LineTooLongException(lineBuffer.length);
+            }
+            lineBuffer[length++] = (byte) b;
+        }
+    }
+
+    /**
+     * Returns true if the client closed its side of the connection, waiting at most a millisecond.
+     * Nothing is consumed: bytes the client already sent, e.g. a pipelined command, stay buffered for {@link #readLine}.
+     *
+     * @throws IOException If the connection was reset.
+     */
+    public boolean isClosedByPeer() throws IOException {
+        if (in.available() > 0) {
+            return false;
+        }
+        socket.setSoTimeout(1);
+        in.mark(1);
+        try {
+            if (in.read() == -1) {
+                return true;
+            }
+            in.reset();
+            return false;
+        } catch (SocketTimeoutException e) {
+            return false;
+        }
+    }
+
+    private String decode(int length) {
+        if (length > 0 && lineBuffer[length - 1] == '\r') {
+            length--;
+        }
+        return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+}
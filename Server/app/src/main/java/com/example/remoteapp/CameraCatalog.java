@@ -0,0 +1,172 @@
+package com.example.remoteapp;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.os.Build;
+import android.util.Size;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * In-memory cache of the device cameras, their lens facing and supported JPEG output sizes.
+ * The hardware is queried on first use; once a query found cameras, every later lookup is served from memory.
+ */
+public class CameraCatalog {
+
+    /** One camera as reported by the Camera2 API. */
+    public static class CameraDescriptor {
+        public final String id;
+        public final int lensFacing;          // CameraCharacteristics.LENS_FACING_*
+        public final List<Size> jpegSizes;    // largest first
+
+        CameraDescriptor(String id, int lensFacing, List<Size> jpegSizes) {
+            this.id = id;
+            this.lensFacing = lensFacing;
+            this.jpegSizes = Collections.unmodifiableList(jpegSizes);
+        }
+
+        /**
+         * Returns "back", "front" or "external".
+         */
+        public String facingName() {
+            switch (lensFacing) {
+                case CameraCharacteristics.LENS_FACING_FRONT: return "front";
+                case CameraCharacteristics.LENS_FACING_BACK: return "back";
+                default: return "external";
+            }
+        }
+    }
+
+    private static CameraCatalog instance;
+
+    private final List<CameraDescriptor> cameras;
+    private final Set<Set<String>> concurrentCameraIds;
+    private final String formatted;
+
+    private CameraCatalog(List<CameraDescriptor> cameras, Set<Set<String>> concurrentCameraIds) {
+        this.cameras = Collections.unmodifiableList(cameras);
+        this.concurrentCameraIds = concurrentCameraIds;
+        this.formatted = format(cameras, concurrentCameraIds);
+    }
+
+    /**
+     * Returns the shared catalog, querying the camera hardware until a query succeeds.
+     * A failed or empty query is not cached: the camera service may not be ready yet, and caching it would make
+     * every later lookup fail for the life of the process. The next call queries again.
+     *
+     * @param context Any context, used to reach the CameraManager.
+     */
+    public static synchronized CameraCatalog get(Context context) {
+        if (instance != null) {
+            return instance;
+        }
+        CameraCatalog catalog = query((CameraManager) context.getApplicationContext().getSystemService(Context.CAMERA_SERVICE));
+        if (catalog == null) {
+            return new CameraCatalog(new ArrayList<>(), Collections.emptySet());
+        }
+        if (!catalog.cameras.isEmpty()) {
+            instance = catalog;
+        }
+        return catalog;
+    }
+
+    /**
+     * Lists the cameras and their JPEG sizes.
+     *
+     * @return The catalog, or null if the camera service could not be queried.
+     */
+    private static CameraCatalog query(CameraManager cameraManager) {
+        List<CameraDescriptor> cameras = new ArrayList<>();
+        Set<Set<String>> concurrent = Collections.emptySet();
+        try {
+            for (String id : cameraManager.getCameraIdList()) {
+                CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(id);
+                Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+                StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+                List<Size> sizes = new ArrayList<>();
+                if (map != null && map.getOutputSizes(ImageFormat.JPEG) != null) {
+                    Collections.addAll(sizes, map.getOutputSizes(ImageFormat.JPEG));
+                    sizes.sort((a, b) -> Long.compare((long) b.getWidth() * b.getHeight(), (long) a.getWidth() * a.getHeight()));
+                }
+                cameras.add(new CameraDescriptor(id, facing != null ? facing : CameraCharacteristics.LENS_FACING_EXTERNAL, sizes));
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                concurrent = new HashSet<>(cameraManager.getConcurrentCameraIds());
+            }
+        } catch (CameraAccessException e) {
+            EventLog.record(EventLog.Event.CAMERA_QUERY_FAILED, 0, e.getMessage());
+            return null;
+        }
+        return new CameraCatalog(cameras, concurrent);
+    }
+
+    public List<CameraDescriptor> getCameras() {
+        return cameras;
+    }
+
+    /**
+     * Resolves a lens selector sent by a client.
+     *
+     * @param lens A camera ID, "back", "front" or "external". Null or empty selects the first back camera.
+     * @return The matching camera, or null if there is none.
+     */
+    public CameraDescriptor find(String lens) {
+        String wanted = (lens == null || lens.isEmpty()) ? "back" : lens.toLowerCase(Locale.ROOT);
+        for (CameraDescriptor camera : cameras) {
+            if (camera.id.equals(wanted)) {
+                return camera;
+            }
+        }
+        for (CameraDescriptor camera : cameras) {
+            if (camera.facingName().equals(wanted)) {
+                return camera;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the device can stream from both cameras at the same time.
+     */
+    public boolean supportsConcurrent(String firstId, String secondId) {
+        for (Set<String> combination : concurrentCameraIds) {
+            if (combination.contains(firstId) && combination.contains(secondId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the catalog as text, one camera per line followed by the concurrent combinations.
+     * Built once, since the catalog never changes.
+     */
+    public String format() {
+        return formatted;
+    }
+
+    private static String format(List<CameraDescriptor> cameras, Set<Set<String>> concurrentCameraIds) {
+        StringBuilder builder = new StringBuilder();
+        for (CameraDescriptor camera : cameras) {
+            builder.append("id=").append(camera.id).append(" facing=").append(camera.facingName()).append(" sizes=");
+            for (int i = 0; i < camera.jpegSizes.size(); i++) {
+                Size size = camera.jpegSizes.get(i);
+                builder.append(i == 0 ? "" : ",").append(size.getWidth()).append('x').append(size.getHeight());
+            }
+            builder.append('\n');
+        }
+        for (Set<String> combination : concurrentCameraIds) {
+            builder.append("concurrent=").append(String.join("+", combination)).append('\n');
+        }
+        return builder.length() == 0 ? "No cameras found\n" : builder.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.remoteapp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the cameras used by running capture jobs and motion detection. Binding a camera that cannot stream
+ * together with a reserved one would unbind the reserved camera and abort its captures and analysis,
+ * so such work is refused instead. At most two cameras can be reserved, the most CameraSessionManager binds at once.
+ * Thread-safe: jobs release their camera on the thread that finishes them.
+ */
+public class CameraReservations {
+
+    private final Map<String, Integer> reservations = new HashMap<>();  // camera ID -> number of holders
+
+    /**
+     * Returns why the camera cannot be used now without interrupting a reserved camera, or null if it can.
+     *
+     * @param catalog The catalog that knows which cameras can stream concurrently.
+     * @param cameraId The camera about to be bound.
+     */
+    public synchronized String check(CameraCatalog catalog, String cameraId) {
+        if (reservations.containsKey(cameraId)) {
+            return null;
+        }
+        if (reservations.size() >= 2) {
+            return "Cameras " + String.join(" and ", reservations.keySet()) + " are in use by running jobs";
+        }
+        for (String reservedId : reservations.keySet()) {
+            if (!catalog.supportsConcurrent(reservedId, cameraId)) {
+                return "Camera " + cameraId + " cannot stream together with camera " + reservedId + ", which a running job uses";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reserves the camera if {@link #check} allows it. Every successful call must be paired with {@link #release}.
+     *
+     * @return null if the camera was reserved, otherwise why it was not.
+     */
+    public synchronized String reserve(CameraCatalog catalog, String cameraId) {
+        String refused = check(catalog, cameraId);
+        if (refused == null) {
+            reservations.merge(cameraId, 1, Integer::sum);
+        }
+        return refused;
+    }
+
+    /**
+     * Gives back one reservation of the camera.
+     */
+    public synchronized void release(String cameraId) {
+        reservations.computeIfPresent(cameraId, (id, holders) -> holders > 1 ? holders - 1 : null);
+    }
+
+    /**
+     * Returns true if a running job or motion detection uses the camera.
+     */
+    public synchronized boolean isReserved(String cameraId) {
+        return reservations.containsKey(cameraId);
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.remoteapp;
+
+import android.util.Size;
+import androidx.annotation.NonNull;
+import androidx.annotation.OptIn;
+import androidx.camera.camera2.interop.Camera2CameraInfo;
+import androidx.camera.camera2.interop.ExperimentalCamera2Interop;
+import androidx.camera.core.CameraInfo;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ConcurrentCamera;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.UseCaseGroup;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.core.content.ContextCompat;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Keeps camera use cases bound between captures, so consecutive photos on the same lens
+ * do not pay for a full unbind/rebind. An optional ImageAnalysis use case (motion detection)
+ * is bound next to the ImageCapture of its camera. Switching to another lens rebinds; if the device can
+ * stream from the current and the requested lens concurrently, both stay bound and captures
+ * on the two lenses can run at the same time. A switch that would unbind a camera reserved by a running job
+ * (see {@link CameraReservations}) is refused instead.
+ * All methods must be called on the main thread (CameraX binding requirement).
+ * Capture results are delivered on a dedicated camera callback thread rather than the main thread,
+ * so saving, storing and answering a capture never waits behind UI work.
+ */
+public class CameraSessionManager {
+
+    // Shared across session managers, so callbacks of captures still in flight when one is released are not rejected.
+    private static final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "CameraCallbacks");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final MainActivity mainActivity;
+    private final CameraCatalog catalog;
+    private final CameraReservations reservations;
+    private final Map<String, CameraSelector> selectors = new HashMap<>();
+    private final Map<String, ImageCapture> boundCaptures = new LinkedHashMap<>();
+    private final Map<String, CaptureProfile> boundProfiles = new HashMap<>();
+    private ImageAnalysis imageAnalysis;
+    private String analysisCameraId;
+    private ProcessCameraProvider cameraProvider;
+
+    /**
+     * @param mainActivity The lifecycle owner the cameras are bound to.
+     * @param catalog The cached camera list.
+     * @param reservations The cameras that must stay bound for running jobs.
+     */
+    public CameraSessionManager(MainActivity mainActivity, CameraCatalog catalog, CameraReservations reservations) {
+        this.mainActivity = mainActivity;
+        this.catalog = catalog;
+        this.reservations = reservations;
+    }
+
+    /**
+     * Takes a picture on the given camera with the profile it is already bound with, or FAST if it is not bound.
+     * Ad-hoc photos never change the profile of a bound camera, and binding their camera fails (through onError)
+     * if it would unbind a camera reserved by a running job, so they cannot abort the job's captures or analysis.
+     *
+     * @see #takePicture(CameraCatalog.CameraDescriptor, CaptureProfile, ImageCapture.OutputFileOptions, ImageCapture.OnImageSavedCallback)
+     */
+    public void takePicture(CameraCatalog.CameraDescriptor camera, ImageCapture.OutputFileOptions outputOptions,
+                            ImageCapture.OnImageSavedCallback callback) {
+        takePicture(camera, null, outputOptions, callback);
+    }
+
+    /**
+     * Takes a picture on the given camera, binding it first if needed.
+     * Changing the profile of a bound camera rebinds it, since the capture mode is fixed per use case;
+     * the rebind aborts captures in flight on the bound use cases, which is why CaptureScheduler does not run
+     * jobs with different profiles on the same camera.
+     * Failures to bind, including a bind that would unbind a reserved camera, are reported through the callback's onError.
+     *
+     * @param camera The camera to use.
+     * @param profile The capture settings, or null to use the bound ones.
+     * @param outputOptions Where to write the image.
+     * @param callback Receives the result on the camera callback thread.
+     */
+    public void takePicture(CameraCatalog.CameraDescriptor camera, CaptureProfile profile,
+                            ImageCapture.OutputFileOptions outputOptions, ImageCapture.OnImageSavedCallback callback) {
+        withProvider(provider -> {
+            ImageCapture imageCapture = bind(provider, camera.id, profile);
+            imageCapture.setTargetRotation(mainActivity.getWindowManager().getDefaultDisplay().getRotation());
+            imageCapture.takePicture(outputOptions, callbackExecutor, callback);
+        }, e -> callbackExecutor.execute(() ->
+                callback.onError(new ImageCaptureException(ImageCapture.ERROR_UNKNOWN, e.getMessage(), e))));
+    }
+
+    /**
+     * Binds an ImageAnalysis use case next to the ImageCapture of the given camera and feeds its frames
+     * to the analyzer. Only one analyzer can run at a time; starting another one replaces it.
+     * Binding a lens that cannot run concurrently with this camera pauses the analysis until the
+     * camera is bound again.
+     *
+     * @param camera The camera to analyze.
+     * @param analyzer Receives the frames; it must close every ImageProxy.
+     * @param executor The thread the analyzer runs on.
+     * @param onBound Called on the main thread once the analysis is bound.
+     * @param onError Called on the main thread if the camera could not be bound.
+     */
+    public void startAnalysis(CameraCatalog.CameraDescriptor camera, ImageAnalysis.Analyzer analyzer, Executor executor,
+                              Runnable onBound, Consumer<Exception> onError) {
+        withProvider(provider -> {
+            ImageAnalysis analysis = new ImageAnalysis.Builder()
+                    .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                    .setResolutionSelector(new ResolutionSelector.Builder()
+                            .setResolutionStrategy(new ResolutionStrategy(
+                                    new Size(Constants.MOTION_ANALYSIS_WIDTH, Constants.MOTION_ANALYSIS_HEIGHT),
+                                    ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                            .build())
+                    .build();
+            analysis.setAnalyzer(executor, analyzer);
+            imageAnalysis = analysis;
+            analysisCameraId = camera.id;
+            CaptureProfile profile = boundProfiles.get(camera.id);
+            boundCaptures.remove(camera.id);
+            bind(provider, camera.id, profile != null ? profile : CaptureProfile.FAST);
+            onBound.run();
+        }, onError);
+    }
+
+    /**
+     * Stops the analysis started by {@link #startAnalysis}; the bound cameras are rebound with their ImageCapture only.
+     * A single use case cannot be unbound: CameraX rejects unbind(UseCase) once the provider is in concurrent mode.
+     */
+    public void stopAnalysis() {
+        if (imageAnalysis == null) {
+            return;
+        }
+        imageAnalysis.clearAnalyzer();
+        imageAnalysis = null;
+        analysisCameraId = null;
+        if (cameraProvider == null || boundCaptures.isEmpty()) {
+            return;
+        }
+        List<String> cameraIds = new ArrayList<>(boundCaptures.keySet());
+        List<CaptureProfile> profiles = new ArrayList<>();
+        for (String cameraId : cameraIds) {
+            profiles.add(boundProfiles.get(cameraId));
+        }
+        try {
+            bindAll(cameraProvider, cameraIds, profiles);
+        } catch (RuntimeException e) {
+            // Nothing stays bound; the next capture binds its camera again.
+            EventLog.record(EventLog.Event.CAMERA_BIND_FAILED, 0, e.getMessage());
+            cameraProvider.unbindAll();
+            boundCaptures.clear();
+            boundProfiles.clear();
+        }
+    }
+
+    /**
+     * Unbinds every use case, e.g. before the activity goes away.
+     */
+    public void release() {
+        if (cameraProvider != null) {
+            cameraProvider.unbindAll();
+        }
+        boundCaptures.clear();
+        boundProfiles.clear();
+        imageAnalysis = null;
+        analysisCameraId = null;
+    }
+
+    private interface ProviderAction {
+        void run(ProcessCameraProvider provider);
+    }
+
+    /**
+     * Runs the action with the camera provider, fetching it only the first time.
+     * The provider listener stays on the main thread because the action binds use cases.
+     */
+    private void withProvider(ProviderAction action, Consumer<Exception> onError) {
+        if (cameraProvider != null) {
+            runReportingErrors(action, onError);
+            return;
+        }
+        ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(mainActivity);
+        cameraProviderFuture.addListener(() -> {
+            try {
+                cameraProvider = cameraProviderFuture.get();
+                runReportingErrors(action, onError);
+            } catch (ExecutionException | InterruptedException e) {
+                EventLog.record(EventLog.Event.CAMERA_BIND_FAILED, 0, e.getMessage());
+                onError.accept(new IllegalStateException("Camera unavailable", e));
+            }
+        }, ContextCompat.getMainExecutor(mainActivity));
+    }
+
+    private void runReportingErrors(ProviderAction action, Consumer<Exception> onError) {
+        try {
+            action.run(cameraProvider);
+        } catch (RuntimeException e) {
+            EventLog.record(EventLog.Event.CAMERA_BIND_FAILED, 0, e.getMessage());
+            onError.accept(new IllegalStateException("Failed to bind camera: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Returns the ImageCapture bound to the camera, binding it if it is not bound yet or bound with another profile.
+     * A bound camera that can stream concurrently with the requested one stays bound, preferably a reserved one.
+     *
+     * @param profile The wanted capture settings, or null to accept the bound ones (FAST if the camera is not bound).
+     * @throws IllegalStateException If the bind would unbind a camera reserved by a running job.
+     */
+    private ImageCapture bind(ProcessCameraProvider provider, String cameraId, CaptureProfile profile) {
+        ImageCapture imageCapture = boundCaptures.get(cameraId);
+        if (imageCapture != null && (profile == null || boundProfiles.get(cameraId) == profile)) {
+            return imageCapture;
+        }
+        if (profile == null) {
+            profile = CaptureProfile.FAST;
+        }
+        String keep = null;
+        for (String boundId : boundCaptures.keySet()) {
+            if (!boundId.equals(cameraId) && catalog.supportsConcurrent(boundId, cameraId)
+                    && (keep == null || reservations.isReserved(boundId))) {
+                keep = boundId;
+            }
+        }
+        for (String boundId : boundCaptures.keySet()) {
+            if (!boundId.equals(cameraId) && !boundId.equals(keep) && reservations.isReserved(boundId)) {
+                throw new IllegalStateException("Camera " + boundId + " is in use by a running job");
+            }
+        }
+        if (keep != null) {
+            bindAll(provider, Arrays.asList(keep, cameraId), Arrays.asList(boundProfiles.get(keep), profile));
+        } else {
+            bindAll(provider, Collections.singletonList(cameraId), Collections.singletonList(profile));
+        }
+        return boundCaptures.get(cameraId);
+    }
+
+    /**
+     * Replaces every bound use case with an ImageCapture per camera, plus the analysis on its camera.
+     * If two cameras cannot be bound concurrently after all, only the last one is bound.
+     */
+    private void bindAll(ProcessCameraProvider provider, List<String> cameraIds, List<CaptureProfile> profiles) {
+        provider.unbindAll();
+        boundCaptures.clear();
+        boundProfiles.clear();
+        int last = cameraIds.size() - 1;
+        if (cameraIds.size() > 1) {
+            try {
+                bindConcurrent(provider, cameraIds, profiles);
+            } catch (RuntimeException e) {
+                EventLog.record(EventLog.Event.CAMERA_CONCURRENT_FALLBACK, 0, e.getMessage());
+                provider.unbindAll();
+                boundCaptures.clear();
+                boundProfiles.clear();
+                bindSingle(provider, cameraIds.get(last), profiles.get(last));
+            }
+        } else {
+            bindSingle(provider, cameraIds.get(last), profiles.get(last));
+        }
+        EventLog.record(EventLog.Event.CAMERA_BOUND, boundCaptures.size(), cameraIds.get(last));
+    }
+
+    private void bindSingle(ProcessCameraProvider provider, String cameraId, CaptureProfile profile) {
+        ImageCapture capture = new ImageCapture.Builder().setCaptureMode(profile.captureMode).build();
+        if (cameraId.equals(analysisCameraId)) {
+            provider.bindToLifecycle(mainActivity, selectorFor(cameraId), capture, imageAnalysis);
+        } else {
+            provider.bindToLifecycle(mainActivity, selectorFor(cameraId), capture);
+        }
+        boundCaptures.put(cameraId, capture);
+        boundProfiles.put(cameraId, profile);
+    }
+
+    private void bindConcurrent(ProcessCameraProvider provider, List<String> cameraIds, List<CaptureProfile> profiles) {
+        List<ConcurrentCamera.SingleCameraConfig> configs = new ArrayList<>();
+        for (int i = 0; i < cameraIds.size(); i++) {
+            ImageCapture capture = new ImageCapture.Builder().setCaptureMode(profiles.get(i).captureMode).build();
+            UseCaseGroup.Builder group = new UseCaseGroup.Builder().addUseCase(capture);
+            if (cameraIds.get(i).equals(analysisCameraId)) {
+                group.addUseCase(imageAnalysis);
+            }
+            configs.add(new ConcurrentCamera.SingleCameraConfig(selectorFor(cameraIds.get(i)), group.build(), mainActivity));
+            boundCaptures.put(cameraIds.get(i), capture);
+            boundProfiles.put(cameraIds.get(i), profiles.get(i));
+        }
+        provider.bindToLifecycle(configs);
+    }
+
+    /**
+     * Returns a selector matching exactly one camera ID, built once per ID.
+     */
+    private CameraSelector selectorFor(String cameraId) {
+        CameraSelector selector = selectors.get(cameraId);
+        if (selector == null) {
+            selector = new CameraSelector.Builder().addCameraFilter(cameraInfos -> filterById(cameraInfos, cameraId)).build();
+            selectors.put(cameraId, selector);
+        }
+        return selector;
+    }
+
+    @OptIn(markerClass = ExperimentalCamera2Interop.class)
+    private static List<CameraInfo> filterById(@NonNull List<CameraInfo> cameraInfos, String cameraId) {
+        List<CameraInfo> matching = new ArrayList<>(1);
+        for (CameraInfo info : cameraInfos) {
+            if (Camera2CameraInfo.from(info).getCameraId().equals(cameraId)) {
+                matching.add(info);
+            }
+        }
+        return matching;
+    }
+}
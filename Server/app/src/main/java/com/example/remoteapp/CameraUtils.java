@@ -1,32 +1,29 @@
 package com.example.remoteapp;
 
-import android.content.ContentValues;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.os.Environment;
 import android.provider.MediaStore;
 import android.util.Log;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
-import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
-import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
-import com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.ExecutionException;
 
 /** Utility class for managing camera operations like opening the native camera,
- taking photos automatically, and saving images to the gallery. */
+ taking photos automatically, and saving images to the gallery (in the background, see GalleryWriter). */
 public class CameraUtils {
 
     private static Runnable pendingActionAfterPermission;
+    private static GalleryWriter galleryWriter;
+    private static CameraSessionManager sessionManager;
+    private static final CameraReservations cameraReservations = new CameraReservations();
     /** Opens the default device camera app if permission is granted.
     @param mainActivity The MainActivity context.
     @return A status message indicating success or error.*/
@@ -75,88 +72,143 @@ public class CameraUtils {
         pendingActionAfterPermission=r;
     }
 
+    /**
+     * Returns the shared camera session manager, creating it on first use.
+     *
+     * @param mainActivity The MainActivity context.
+     */
+    public static synchronized CameraSessionManager getSessionManager(MainActivity mainActivity) {
+        if (sessionManager == null) {
+            sessionManager = new CameraSessionManager(mainActivity, CameraCatalog.get(mainActivity), cameraReservations);
+        }
+        return sessionManager;
+    }
+
+    /**
+     * Returns the cameras reserved by running capture jobs and motion detection.
+     * Not tied to the activity, so a session manager created after a rotation still sees the reservations.
+     */
+    public static CameraReservations getCameraReservations() {
+        return cameraReservations;
+    }
+
+    /**
+     * Returns the session manager if one exists, without creating it, e.g. to stop work once the activity is gone.
+     */
+    public static synchronized CameraSessionManager getSessionManagerIfCreated() {
+        return sessionManager;
+    }
+
+    /**
+     * Unbinds the cameras and drops the session manager, so it does not outlive the activity.
+     */
+    public static synchronized void releaseSessionManager() {
+        if (sessionManager != null) {
+            sessionManager.release();
+            sessionManager = null;
+        }
+    }
+
+    /**
+     * Resolves the lens requested by the client, answering it with an error if no camera matches
+     * or if binding the camera would interrupt a running job.
+     *
+     * @return The camera to use, or null if the client was already answered.
+     */
+    private static CameraCatalog.CameraDescriptor resolveLens(MainActivity mainActivity, ResponseHandle client, String lens) {
+        CameraCatalog catalog = CameraCatalog.get(mainActivity);
+        CameraCatalog.CameraDescriptor camera = catalog.find(lens);
+        if (camera == null) {
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "No camera matches: " + lens));
+            return null;
+        }
+        String refused = cameraReservations.check(catalog, camera.id);
+        if (refused != null) {
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, refused));
+            return null;
+        }
+        return camera;
+    }
+
     /**
      * Captures a photo automatically and saves it to the app's private storage.
+     * Must be called on the main thread.
      *
      * @param mainActivity The MainActivity context.
-     * @param socketServer The SocketServer to send the image back to the client.
+     * @param client The client to send the image back to.
+     * @param lens A camera ID or facing ("back", "front", "external"); null selects the back camera.
      */
 
-    public static void capturePhotoAutomatically(MainActivity mainActivity,SocketServer socketServer) {
+    public static void capturePhotoAutomatically(MainActivity mainActivity, ResponseHandle client, String lens) {
+        CameraCatalog.CameraDescriptor camera = resolveLens(mainActivity, client, lens);
+        if (camera == null) {
+            return;
+        }
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        File outputFile = new File(mainActivity.getExternalFilesDir("photos"), "captured_auto_"+timeStamp+".jpg");
-        ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(mainActivity);
-        cameraProviderFuture.addListener(() -> {
-            try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
-                CameraSelector cameraSelector = new CameraSelector.Builder().requireLensFacing(CameraSelector.LENS_FACING_BACK).build();
-                ImageCapture imageCapture = new ImageCapture.Builder().setTargetRotation(mainActivity.getWindowManager().getDefaultDisplay().getRotation()).build();
-                cameraProvider.unbindAll();
-                cameraProvider.bindToLifecycle(mainActivity, cameraSelector, imageCapture);
-                ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(outputFile).build();
-                imageCapture.takePicture(outputOptions, ContextCompat.getMainExecutor(mainActivity), new ImageCapture.OnImageSavedCallback() {
-                            @Override
-                            public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
-                                Log.d("CameraX", " onImageSaved called!");
-                                Log.d("CameraX", "Image captured: " + outputFile.getAbsolutePath());
-                                SocketServer.answerToClient(new Response(Response.ResponseType.IMAGE, outputFile));
-                            }
-                            @Override
-                            public void onError(@NonNull ImageCaptureException exception) {
-                                Log.e("CameraX", "Failed: " + exception.getMessage());
-                            }
-                        }
-                );
-
-            } catch (ExecutionException | InterruptedException e) {
-                Log.e("CameraX", "Failed to initialize CameraProvider", e);
-            }
-        }, ContextCompat.getMainExecutor(mainActivity));
+        File outputFile = new File(mainActivity.getExternalFilesDir("photos"), "captured_auto_" + camera.facingName() + "_" + timeStamp + ".jpg");
+        ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(outputFile).build();
+        getSessionManager(mainActivity).takePicture(camera, outputOptions, new ImageCapture.OnImageSavedCallback() {
+                    @Override
+                    public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
+                        EventLog.record(EventLog.Event.PHOTO_CAPTURED, outputFile.length(), camera.id);
+                        SocketServer.answerToClient(client, new Response(Response.ResponseType.IMAGE, outputFile));
+                    }
+                    @Override
+                    public void onError(@NonNull ImageCaptureException exception) {
+                        EventLog.record(EventLog.Event.PHOTO_FAILED, exception.getImageCaptureError(), exception.getMessage());
+                        SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "Capture failed: " + exception.getMessage()));
+                    }
+                }
+        );
     }
 
     /**
-     * Captures a photo and saves it directly into the device's public gallery.
+     * Returns the shared background gallery writer, creating it on first use.
      *
      * @param mainActivity The MainActivity context.
-     * @param socketServer The SocketServer to notify the client after saving the photo.
      */
+    public static synchronized GalleryWriter getGalleryWriter(MainActivity mainActivity) {
+        if (galleryWriter == null) {
+            galleryWriter = new GalleryWriter(mainActivity);
+        }
+        return galleryWriter;
+    }
 
-    public static void capturePhotoToGallery(MainActivity mainActivity, SocketServer socketServer) {
-        ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(mainActivity);
-        cameraProviderFuture.addListener(() -> {
-            try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
-                CameraSelector cameraSelector = new CameraSelector.Builder().requireLensFacing(CameraSelector.LENS_FACING_BACK).build();
-                ImageCapture imageCapture = new ImageCapture.Builder().setTargetRotation(mainActivity.getWindowManager().getDefaultDisplay().getRotation()).build();
-                cameraProvider.unbindAll();
-                cameraProvider.bindToLifecycle(mainActivity, cameraSelector, imageCapture);
-                ContentValues contentValues = new ContentValues();
-                String fileName = "IMG_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".jpg";
-                contentValues.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);
-                contentValues.put(MediaStore.Images.Media.MIME_TYPE, "image/jpeg");
-                contentValues.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_DCIM);
-
-                ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(mainActivity.getContentResolver(),
-                                MediaStore.Images.Media.EXTERNAL_CONTENT_URI, contentValues).build();
-                imageCapture.takePicture(outputOptions, ContextCompat.getMainExecutor(mainActivity), new ImageCapture.OnImageSavedCallback() {
-                            @Override
-                            public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
-                                Log.d("CameraX", "Image saved to gallery!");
-                                SocketServer.answerToClient(new Response(Response.ResponseType.TEXT, "Image saved to gallery!"));
-                            }
-
-                            @Override
-                            public void onError(@NonNull ImageCaptureException exception) {
-                                Log.e("CameraX", " Failed to save image: " + exception.getMessage());
-                            }
-                        }
-                );
-
-            } catch (ExecutionException | InterruptedException e) {
-                Log.e("CameraX", "Failed to initialize CameraProvider for gallery save", e);
-
-            }
-        }, ContextCompat.getMainExecutor(mainActivity));
+    /**
+     * Captures a photo, sends it to the client right away and then saves it into the device's public gallery.
+     * The gallery copy is done by the GalleryWriter in the background, so the client never waits for the
+     * MediaStore write; its outcome is reported by the GALLERY_STATUS command.
+     *
+     * @param mainActivity The MainActivity context.
+     * @param client The client to send the image to.
+     * @param lens A camera ID or facing ("back", "front", "external"); null selects the back camera.
+     */
+
+    public static void capturePhotoToGallery(MainActivity mainActivity, ResponseHandle client, String lens) {
+        CameraCatalog.CameraDescriptor camera = resolveLens(mainActivity, client, lens);
+        if (camera == null) {
+            return;
+        }
+        String fileName = "IMG_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".jpg";
+        File outputFile = new File(mainActivity.getExternalFilesDir("photos"), fileName);
+        GalleryWriter writer = getGalleryWriter(mainActivity);
+        ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(outputFile).build();
+        getSessionManager(mainActivity).takePicture(camera, outputOptions, new ImageCapture.OnImageSavedCallback() {
+                    @Override
+                    public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
+                        EventLog.record(EventLog.Event.PHOTO_CAPTURED, outputFile.length(), camera.id);
+                        // The file is handed to the gallery writer only after it was sent, since the writer deletes it.
+                        SocketServer.answerToClient(client, new Response(Response.ResponseType.IMAGE, outputFile),
+                                () -> writer.enqueue(outputFile));
+                    }
+
+                    @Override
+                    public void onError(@NonNull ImageCaptureException exception) {
+                        EventLog.record(EventLog.Event.PHOTO_FAILED, exception.getImageCaptureError(), exception.getMessage());
+                        SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "Capture failed: " + exception.getMessage()));
+                    }
+                }
+        );
     }
 
 
@@ -0,0 +1,28 @@
+package com.example.remoteapp;
+
+import androidx.camera.core.ImageCapture;
+
+/**
+ * Capture settings a client can ask for, mapped to the CameraX capture mode.
+ */
+public enum CaptureProfile {
+    FAST(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY),
+    QUALITY(ImageCapture.CAPTURE_MODE_MAXIMIZE_QUALITY);
+
+    public final int captureMode;
+
+    CaptureProfile(int captureMode) {
+        this.captureMode = captureMode;
+    }
+
+    /**
+     * Converts a string into a corresponding CaptureProfile.
+     */
+    public static CaptureProfile fromString(String profile) {
+        try {
+            return CaptureProfile.valueOf(profile.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
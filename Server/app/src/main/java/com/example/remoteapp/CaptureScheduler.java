@@ -0,0 +1,238 @@
+package com.example.remoteapp;
+
+import android.os.Handler;
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs timelapse jobs on the device: a job takes one photo every interval, count times, and puts
+ * the results into the CaptureStore. Ticks are scheduled at a fixed rate on a dedicated thread,
+ * so the cadence does not drift with capture time; a tick that arrives while the previous
+ * capture is still running is skipped rather than queued.
+ * A running job reserves its camera (see {@link CameraReservations}), so other work cannot unbind it.
+ */
+public class CaptureScheduler {
+
+    /** One scheduled capture job. */
+    private static class Job {
+        final int id;
+        final long intervalMs;
+        final int count;
+        final CaptureProfile profile;
+        final CameraCatalog.CameraDescriptor camera;
+        final long startNanos = System.nanoTime();
+        final AtomicInteger ticks = new AtomicInteger();
+        final AtomicInteger captured = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicBoolean inFlight = new AtomicBoolean();
+        final AtomicBoolean finished = new AtomicBoolean();
+        volatile long maxLatenessMs;
+        volatile ScheduledFuture<?> future;
+
+        Job(int id, long intervalMs, int count, CaptureProfile profile, CameraCatalog.CameraDescriptor camera) {
+            this.id = id;
+            this.intervalMs = intervalMs;
+            this.count = count;
+            this.profile = profile;
+            this.camera = camera;
+        }
+    }
+
+    private final MainActivity mainActivity;
+    private final Handler mainHandler;
+    private final CaptureStore store;
+    private final CameraReservations reservations;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "CaptureScheduler"));
+    private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * @param mainActivity The activity used for camera access and file storage.
+     * @param mainHandler Handler of the main thread, where captures are started.
+     * @param store Receives the captured images.
+     * @param reservations Holds the cameras of the running jobs.
+     */
+    public CaptureScheduler(MainActivity mainActivity, Handler mainHandler, CaptureStore store, CameraReservations reservations) {
+        this.mainActivity = mainActivity;
+        this.mainHandler = mainHandler;
+        this.store = store;
+        this.reservations = reservations;
+    }
+
+    /**
+     * Returns why a job with these settings cannot start now, or null if it can.
+     * Running jobs are capped, and jobs on the same camera must share a profile: the capture mode is fixed
+     * per bound use case, so two profiles would rebind the camera on every tick and abort each other's captures.
+     * For the same reason the camera must be able to stream together with the cameras of the other running jobs
+     * and of motion detection.
+     * Call it on the main thread right before {@link #schedule}, like every other scheduling call.
+     *
+     * @param profile Capture settings of the new job.
+     * @param camera The camera of the new job.
+     */
+    public String checkSchedulable(CaptureProfile profile, CameraCatalog.CameraDescriptor camera) {
+        int running = 0;
+        for (Job job : jobs.values()) {
+            if (job.finished.get()) {
+                continue;
+            }
+            running++;
+            if (job.camera.id.equals(camera.id) && job.profile != profile) {
+                return "Camera " + camera.id + " is used by job " + job.id + " with profile "
+                        + job.profile.name().toLowerCase(Locale.ROOT);
+            }
+        }
+        if (running >= Constants.MAX_RUNNING_JOBS) {
+            return "Too many running jobs (max " + Constants.MAX_RUNNING_JOBS + ")";
+        }
+        return reservations.check(CameraCatalog.get(mainActivity), camera.id);
+    }
+
+    /**
+     * Starts a job. The first photo is taken right away.
+     * The caller checks {@link #checkSchedulable} first.
+     *
+     * @param intervalMs Time between two photos.
+     * @param count Number of photos to take.
+     * @param profile Capture settings.
+     * @param camera The camera to use.
+     * @return The job ID.
+     * @throws IllegalStateException If the camera cannot be reserved.
+     */
+    public int schedule(long intervalMs, int count, CaptureProfile profile, CameraCatalog.CameraDescriptor camera) {
+        String refused = reservations.reserve(CameraCatalog.get(mainActivity), camera.id);
+        if (refused != null) {
+            throw new IllegalStateException(refused);
+        }
+        jobs.values().removeIf(old -> old.finished.get() && jobs.size() > Constants.MAX_FINISHED_JOBS);
+        Job job = new Job(store.newJobId(), intervalMs, count, profile, camera);
+        jobs.put(job.id, job);
+        job.future = scheduler.scheduleAtFixedRate(() -> tick(job), 0, intervalMs, TimeUnit.MILLISECONDS);
+        EventLog.record(EventLog.Event.JOB_SCHEDULED, job.id, intervalMs, camera.id);
+        return job.id;
+    }
+
+    /**
+     * Stops a job before it took all its photos.
+     *
+     * @return false if there is no such running job.
+     */
+    public boolean cancel(int jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null || job.finished.get()) {
+            return false;
+        }
+        stopTicking(job);
+        finish(job);
+        return true;
+    }
+
+    /**
+     * Returns one line per job with its progress and the worst tick lateness observed.
+     */
+    public String formatJobs() {
+        StringBuilder builder = new StringBuilder();
+        for (Job job : jobs.values()) {
+            builder.append("job=").append(job.id)
+                    .append(" state=").append(job.finished.get() ? "finished" : "running")
+                    .append(" camera=").append(job.camera.id)
+                    .append(" profile=").append(job.profile.name().toLowerCase(Locale.ROOT))
+                    .append(" interval_ms=").append(job.intervalMs)
+                    .append(" ticks=").append(job.ticks.get()).append('/').append(job.count)
+                    .append(" captured=").append(job.captured.get())
+                    .append(" failed=").append(job.failed.get())
+                    .append(" skipped=").append(job.skipped.get())
+                    .append(" max_lateness_ms=").append(job.maxLatenessMs)
+                    .append('\n');
+        }
+        return builder.length() == 0 ? "No jobs\n" : builder.toString();
+    }
+
+    /**
+     * Cancels all jobs and stops the scheduler thread.
+     */
+    public void shutdown() {
+        for (Job job : jobs.values()) {
+            cancel(job.id);
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void tick(Job job) {
+        int tick = job.ticks.getAndIncrement();
+        if (tick >= job.count) {
+            stopTicking(job);
+            return;
+        }
+        long lateness = (System.nanoTime() - job.startNanos) / 1_000_000L - tick * job.intervalMs;
+        if (lateness > job.maxLatenessMs) {
+            job.maxLatenessMs = lateness;
+        }
+        if (tick == job.count - 1) {
+            stopTicking(job);
+        }
+        if (!job.inFlight.compareAndSet(false, true)) {
+            job.skipped.incrementAndGet();
+            finishIfDone(job);
+            return;
+        }
+        File outputFile = new File(mainActivity.getExternalFilesDir("photos"), "job_" + job.id + "_" + tick + ".jpg");
+        ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(outputFile).build();
+        mainHandler.post(() -> CameraUtils.getSessionManager(mainActivity).takePicture(job.camera, job.profile, outputOptions,
+                new ImageCapture.OnImageSavedCallback() {
+                    @Override
+                    public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
+                        job.captured.incrementAndGet();
+                        store.add(job.id, outputFile);
+                        job.inFlight.set(false);
+                        finishIfDone(job);
+                    }
+
+                    @Override
+                    public void onError(@NonNull ImageCaptureException exception) {
+                        EventLog.record(EventLog.Event.JOB_CAPTURE_FAILED, job.id, exception.getImageCaptureError(), exception.getMessage());
+                        job.failed.incrementAndGet();
+                        job.inFlight.set(false);
+                        finishIfDone(job);
+                    }
+                }));
+    }
+
+    /**
+     * Cancels the periodic ticks. The first tick can run before schedule() stored the future;
+     * in that case the next tick sees ticks >= count and cancels again.
+     */
+    private void stopTicking(Job job) {
+        ScheduledFuture<?> future = job.future;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private void finishIfDone(Job job) {
+        if (job.ticks.get() >= job.count && !job.inFlight.get()) {
+            finish(job);
+        }
+    }
+
+    private void finish(Job job) {
+        if (job.finished.compareAndSet(false, true)) {
+            reservations.release(job.camera.id);
+            EventLog.record(EventLog.Event.JOB_FINISHED, job.id, job.captured.get(), null);
+            store.finishJob(job.id);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.remoteapp;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the most recent captures of capture jobs (scheduled or motion-triggered), so clients
+ * can stream them as they arrive or pull them later in batches. The oldest capture (and its file) is dropped once the store is full.
+ */
+public class CaptureStore {
+
+    /** A captured image with the ID the store assigned to it. */
+    public static class Capture {
+        public final long id;
+        public final int jobId;
+        public final File file;
+        public final long timestampMs;
+        private ImageSignature signature;
+        private boolean signatureComputed;
+
+        Capture(long id, int jobId, File file, long timestampMs) {
+            this.id = id;
+            this.jobId = jobId;
+            this.file = file;
+            this.timestampMs = timestampMs;
+        }
+
+        /**
+         * Returns the block hash of the image, computed on first use and shared by every reader.
+         *
+         * @return The signature, or null if the image could not be decoded.
+         */
+        public synchronized ImageSignature getSignature() {
+            if (!signatureComputed) {
+                signature = ImageSignature.fromJpeg(file);
+                signatureComputed = true;
+            }
+            return signature;
+        }
+    }
+
+    /** Receives captures of a job as they are stored. Called on the thread that added the capture. */
+    public interface Listener {
+        void onCapture(Capture capture);
+
+        void onJobFinished(int jobId);
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Capture> captures;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Integer> activeJobs = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextJobId = new AtomicInteger(1);
+    private long nextId = 1;
+
+    /**
+     * @param capacity Maximum number of captures kept.
+     */
+    public CaptureStore(int capacity) {
+        this.capacity = capacity;
+        this.captures = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Allocates the ID of a new job, which stays active until {@link #finishJob} is called.
+     */
+    public int newJobId() {
+        int jobId = nextJobId.getAndIncrement();
+        activeJobs.add(jobId);
+        return jobId;
+    }
+
+    /**
+     * Returns true if the job may still produce captures.
+     */
+    public boolean isActive(int jobId) {
+        return activeJobs.contains(jobId);
+    }
+
+    /**
+     * Stores a capture and notifies the listeners.
+     * The capture's signature is left to the first deduplicating reader, on its response thread: the caller is the
+     * shared camera callback thread, where a JPEG decode would delay every other capture result.
+     *
+     * @param jobId The job that produced the image.
+     * @param file The image file; the store deletes it when the capture is evicted.
+     * @return The stored capture.
+     */
+    public Capture add(int jobId, File file) {
+        Capture capture;
+        Capture evicted = null;
+        synchronized (this) {
+            capture = new Capture(nextId++, jobId, file, System.currentTimeMillis());
+            if (captures.size() == capacity) {
+                evicted = captures.pollFirst();
+            }
+            captures.addLast(capture);
+        }
+        if (evicted != null && !evicted.file.delete()) {
+            EventLog.record(EventLog.Event.FILE_DELETE_FAILED, 0, evicted.file);
+        }
+        for (Listener listener : listeners) {
+            listener.onCapture(capture);
+        }
+        return capture;
+    }
+
+    /**
+     * Returns up to max captures of a job with an ID greater than afterId, oldest first.
+     */
+    public synchronized List<Capture> fetch(int jobId, long afterId, int max) {
+        List<Capture> result = new ArrayList<>(Math.min(max, captures.size()));
+        Iterator<Capture> iterator = captures.iterator();
+        while (iterator.hasNext() && result.size() < max) {
+            Capture capture = iterator.next();
+            if (capture.jobId == jobId && capture.id > afterId) {
+                result.add(capture);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a stored capture of a job.
+     *
+     * @return The capture, or null if there is no such capture or it was already evicted.
+     */
+    public synchronized Capture get(int jobId, long captureId) {
+        for (Capture capture : captures) {
+            if (capture.id == captureId) {
+                return capture.jobId == jobId ? capture : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells the listeners that a job will not produce any more captures.
+     */
+    public void finishJob(int jobId) {
+        activeJobs.remove(jobId);
+        for (Listener listener : listeners) {
+            listener.onJobFinished(jobId);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
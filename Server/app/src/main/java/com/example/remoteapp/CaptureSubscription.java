@@ -0,0 +1,81 @@
+package com.example.remoteapp;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the captures of one job to a subscribed client as FRAME responses, followed by a TEXT
+ * response once the job finishes. A slow subscriber loses its oldest queued frames instead of
+ * holding back the job. Captures that match the last frame sent are replaced by UNCHANGED responses
+ * unless the subscription was made with deduplication disabled.
+ * While no captures arrive, the subscription checks every poll whether the client closed the connection,
+ * so a client that went away does not hold its connection slot until the job finishes.
+ */
+public class CaptureSubscription implements CaptureStore.Listener, SocketServer.StreamTask {
+
+    private final CaptureStore store;
+    private final int jobId;
+    private final BlockingQueue<CaptureStore.Capture> queue = new ArrayBlockingQueue<>(Constants.SUBSCRIBER_QUEUE_SIZE);
+    private final FrameDeduplicator deduplicator;
+    private volatile boolean finished;
+    private volatile int dropped;
+
+    /**
+     * @param store The store the job writes to.
+     * @param jobId The job to follow.
+     * @param deduplicate true to send UNCHANGED instead of frames that match the previous one.
+     */
+    public CaptureSubscription(CaptureStore store, int jobId, boolean deduplicate) {
+        this.store = store;
+        this.jobId = jobId;
+        this.deduplicator = new FrameDeduplicator(deduplicate);
+    }
+
+    @Override
+    public void onCapture(CaptureStore.Capture capture) {
+        if (capture.jobId != jobId) {
+            return;
+        }
+        synchronized (queue) {
+            while (!queue.offer(capture)) {
+                queue.poll();
+                dropped++;
+            }
+        }
+    }
+
+    @Override
+    public void onJobFinished(int finishedJobId) {
+        if (finishedJobId == jobId) {
+            finished = true;
+        }
+    }
+
+    /**
+     * Forwards captures until the job finishes or the client goes away.
+     *
+     * @throws IOException If a write fails or the client closed the connection.
+     */
+    @Override
+    public void run(ClientConnection client) throws IOException, InterruptedException {
+        try {
+            while (true) {
+                CaptureStore.Capture capture = queue.poll(Constants.SUBSCRIBER_POLL_MS, TimeUnit.MILLISECONDS);
+                if (capture != null) {
+                    SocketServer.writeResponse(client, deduplicator.toResponse(capture));
+                } else if (finished) {
+                    break;
+                } else if (client.isClosedByPeer()) {
+                    throw new IOException("Client closed the connection");
+                }
+            }
+            SocketServer.writeResponse(client, new Response(Response.ResponseType.TEXT,
+                    "Job " + jobId + " finished, " + dropped + " frame(s) dropped, "
+                            + deduplicator.getUnchanged() + " unchanged"));
+        } finally {
+            store.removeListener(this);
+        }
+    }
+}
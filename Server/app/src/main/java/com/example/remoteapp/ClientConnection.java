@@ -0,0 +1,217 @@
+package com.example.remoteapp;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A single accepted client. Owns the socket, reads the command under the configured limits
+ * and makes sure the connection is killed if the client or the server stalls.
+ * Every command receives exactly one response. The connection is then closed, unless the client
+ * asked for KEEPALIVE: it then stays open for the next command until it has been idle for the keep-alive timeout.
+ * Commands are read one at a time, so a client may pipeline several and gets the responses in order.
+ */
+public class ClientConnection {
+
+    private final Socket socket;
+    private final ServerConfig config;
+    private final ConnectionStats stats;
+    private final ScheduledExecutorService watchdog;
+    private final Consumer<ClientConnection> onClosed;
+    private final Consumer<ClientConnection> onReadyForNextCommand;
+    private final BoundedLineReader reader;
+
+    private final AtomicInteger answered = new AtomicInteger();  // number of commands whose response was claimed
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile int commands;  // number of command lines received, written by the reading thread only
+    private volatile boolean keepAlive;
+    private volatile ScheduledFuture<?> responseDeadline;
+
+    /**
+     * @param socket The accepted socket.
+     * @param config The limits to enforce.
+     * @param stats Counters updated whenever the connection gets killed.
+     * @param watchdog Scheduler used for the response and write deadlines.
+     * @param onClosed Invoked exactly once, when the connection is closed.
+     * @param onReadyForNextCommand Invoked after a response on a keep-alive connection, to read the next command.
+     * @throws IOException If the socket streams cannot be opened.
+     */
+    public ClientConnection(Socket socket, ServerConfig config, ConnectionStats stats, ScheduledExecutorService watchdog,
+                            Consumer<ClientConnection> onClosed, Consumer<ClientConnection> onReadyForNextCommand) throws IOException {
+        this.socket = socket;
+        this.config = config;
+        this.stats = stats;
+        this.watchdog = watchdog;
+        this.onClosed = onClosed;
+        this.onReadyForNextCommand = onReadyForNextCommand;
+        this.reader = new BoundedLineReader(socket, config.maxCommandLength);
+    }
+
+    /**
+     * Reads the command line sent by the client. Timeouts are counted in the stats before being rethrown.
+     * The first command must arrive within the connect timeout; on a keep-alive connection the next ones
+     * may follow after up to the keep-alive timeout of silence.
+     *
+     * @return The command, or null if the client disconnected without sending one.
+     * @throws IOException If the command is too long, too slow, or the read fails.
+     */
+    public String readCommand() throws IOException {
+        boolean first = commands == 0;
+        try {
+            String line = first
+                    ? reader.readLine(config.readTimeoutMs, config.connectTimeoutMs)
+                    : reader.readLine(config.keepAliveTimeoutMs, config.keepAliveTimeoutMs + config.connectTimeoutMs);
+            if (line != null) {
+                commands++;
+            }
+            return line;
+        } catch (BoundedLineReader.DeadlineExceededException e) {
+            if (first) {
+                stats.recordConnectTimeout();
+            } else {
+                stats.recordKeepAliveIdle();
+            }
+            throw e;
+        } catch (SocketTimeoutException e) {
+            if (first) {
+                stats.recordReadTimeout();
+            } else {
+                stats.recordKeepAliveIdle();
+            }
+            throw e;
+        } catch (BoundedLineReader.LineTooLongException e) {
+            // The rest of the line is still unread, so the connection cannot be reused after the error response.
+            commands++;
+            keepAlive = false;
+            stats.recordOversizedCommand();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts the response deadline of the command just read. If no response is claimed in time,
+     * the client gets an error instead.
+     *
+     * @return The handle the command's response must be sent through.
+     */
+    public ResponseHandle awaitResponse() {
+        ResponseHandle handle = responseHandle();
+        responseDeadline = watchdog.schedule(() -> {
+            if (handle.claim()) {
+                stats.recordResponseTimeout();
+                SocketServer.sendClaimedResponse(this, new Response(Response.ResponseType.ERROR, "Timed out waiting for response"), null);
+            }
+        }, config.responseTimeoutMs, TimeUnit.MILLISECONDS);
+        return handle;
+    }
+
+    /**
+     * Returns the handle for answering the command read last, without starting its response deadline.
+     */
+    public ResponseHandle responseHandle() {
+        return new ResponseHandle(this, commands);
+    }
+
+    /**
+     * Claims the single response slot of the given command. The slots are claimed in command order:
+     * a command's slot can only be claimed once the previous command was answered, and only once.
+     *
+     * @param command The number of the command on this connection, see {@link ResponseHandle}.
+     * @return true if the caller may send the response, false if a response was already sent or the connection is closed.
+     */
+    boolean claimResponse(int command) {
+        if (closed.get() || !answered.compareAndSet(command - 1, command)) {
+            return false;
+        }
+        ScheduledFuture<?> deadline = responseDeadline;
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+        return true;
+    }
+
+    /**
+     * Starts the write deadline. The socket is closed if the response is not fully written in time,
+     * which unblocks the writing thread. Cancel the returned future once the write completes.
+     */
+    public ScheduledFuture<?> startWriteDeadline() {
+        return watchdog.schedule(() -> {
+            if (!closed.get()) {
+                stats.recordWriteTimeout();
+                EventLog.record(EventLog.Event.WRITE_TIMEOUT, getPort(), getInetAddress());
+                close();
+            }
+        }, config.writeTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns true if the client closed the connection. Only call it while no command is being read,
+     * e.g. between two responses of a stream, which otherwise notices a client that went away only when it next writes.
+     *
+     * @throws IOException If the connection was reset.
+     */
+    public boolean isClosedByPeer() throws IOException {
+        return reader.isClosedByPeer();
+    }
+
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    public InetAddress getInetAddress() {
+        return socket.getInetAddress();
+    }
+
+    public int getPort() {
+        return socket.getPort();
+    }
+
+    /**
+     * Keeps the connection open after each response, see {@link #finishResponse()}.
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Called once the response of the current command was written: reads the next command
+     * on a keep-alive connection, closes the connection otherwise.
+     */
+    public void finishResponse() {
+        if (keepAlive && !closed.get()) {
+            onReadyForNextCommand.accept(this);
+        } else {
+            close();
+        }
+    }
+
+    /**
+     * Closes the socket and releases the connection slot. Safe to call more than once.
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledFuture<?> deadline = responseDeadline;
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.e("SocketServer", "Error closing client socket: " + e.getMessage(), e);
+        } finally {
+            onClosed.accept(this);
+        }
+    }
+}
@@ -1,23 +1,29 @@
 package com.example.remoteapp;
 
 import android.os.Handler;
-import android.util.Log;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 /**
  * A registry that manages mapping between commands (represented as enums) and their corresponding execution logic.
  */
 public class CommandHandlerRegistry {
 
-    private final Map<CommandType, Runnable> commandHandlers = new HashMap<>();
+    private final Map<CommandType, BiConsumer<ResponseHandle, String>> commandHandlers = new HashMap<>();
+    private final CaptureStore captureStore = new CaptureStore(Constants.CAPTURE_STORE_CAPACITY);
+    private CaptureScheduler captureScheduler;
+    private MotionMonitor motionMonitor;
+    private MainLooperMonitor looperMonitor;
 
     /**
      * Initializes the registry with the given context objects.
      *
      * @param mainActivity The main activity instance.
      * @param handler Handler for posting actions to the main thread if needed.
-     * @param socketServer The socket server for sending responses back to the client.
+     * @param socketServer The socket server, used for its connection statistics.
      */
     public CommandHandlerRegistry(MainActivity mainActivity, Handler handler, SocketServer socketServer) {
         initializeHandlers(mainActivity, handler, socketServer);
@@ -25,52 +31,328 @@ public class CommandHandlerRegistry {
 
     /**
      * Sets up the mappings between each CommandType and its corresponding action.
+     * Every action receives the response handle of the command and the command arguments
+     * (the rest of the line after the command name, or null), and must answer through the handle exactly once.
      *
      * - OPEN_CAMERA: Opens the device's camera if permissions are granted.
-     * - TAKE_PHOTO: Captures a photo automatically after ensuring camera permissions.
-     *     (Optionally, you can switch to saving directly to the Gallery by uncommenting the alternative line.)
+     * - TAKE_PHOTO [lens] [gallery]: Captures a photo automatically after ensuring camera permissions.
+     *     The optional lens is a camera ID or a facing ("back", "front", "external"); the default is the back camera.
+     *     Fails if the lens cannot stream together with a camera used by a running job.
+     *     With "gallery", the photo is also copied into the device gallery in the background (see GALLERY_STATUS).
      * - GET_PROP: Fetches device properties (brand, model, Android version, etc.) and returns to the client.
+     * - STATS: Returns the connection counters (accepted, rejected, and killed connections per reason).
+     * - GALLERY_STATUS: Returns the outcome of the background gallery writes (saved, failed, pending).
+     * - LIST_CAMERAS: Returns the cached list of cameras with their facing and supported JPEG sizes.
+     * - SCHEDULE interval_ms count [fast|quality] [lens]: Starts an on-device timelapse job and returns its ID.
+     *     Refused while MAX_RUNNING_JOBS jobs run, while a job with the other profile runs on the same camera,
+     *     or if the camera cannot stream together with the cameras of the running jobs and motion detection.
+     * - CANCEL_JOB job_id: Stops a scheduled job.
+     * - JOBS: Lists the scheduled jobs with their progress and drift.
+     * - SUBSCRIBE job_id [all]: Streams the job's new captures as FRAME responses until the job finishes
+     *     or the client closes the connection.
+     * - FETCH job_id [after_capture_id] [max] [all]: Returns the stored captures of a job as FRAME responses.
+     *     Both send UNCHANGED with the previous capture ID instead of a frame that looks like the last one sent,
+     *     unless "all" is given. FETCH compares with after_capture_id first, and its final TEXT ends with "last=<id>",
+     *     the after_capture_id of the next batch.
+     * - MOTION_START [trigger_percent [lens [left,top,right,bottom]]]: Takes a photo whenever motion is detected
+     *     (inside the optional region of interest, in percent of the frame) and returns the job ID to SUBSCRIBE to.
+     *     The arguments are positional: selecting a lens requires a trigger, e.g. "MOTION_START 2 1" for camera 1.
+     * - MOTION_STOP: Stops motion-triggered capture.
+     * - LOOPER_STATS [start|stop]: Starts or stops main thread tracing, then returns the message dispatch times
+     *     and main queue delays measured so far.
+     * - DUMP_LOG [max] [debug|info|warn|error]: Returns the most recent events of the EventLog at or above the level.
+     * - KEEPALIVE: Keeps the connection open after each response, so the client can send (and pipeline) more commands.
      */
     private void initializeHandlers(MainActivity mainActivity, Handler handler, SocketServer socketServer) {
-        commandHandlers.put(CommandType.OPEN_CAMERA, () -> {
+        commandHandlers.put(CommandType.OPEN_CAMERA, (client, args) -> {
             String result = CameraUtils.openCamera(mainActivity);
-            SocketServer.answerToClient(new Response(Response.ResponseType.TEXT, result));
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, result));
         });
 
-        commandHandlers.put(CommandType.TAKE_PHOTO, () -> {
-            handler.post(() -> mainActivity.requestCameraPermissionIfNeeded(() -> CameraUtils.capturePhotoAutomatically(mainActivity, socketServer)));
-            // Alternative:
-            // If you prefer saving the captured image directly to the device gallery instead of internal storage,
-            // uncomment the following line and comment the automatic capture line above:
-            //handler.post(() -> mainActivity.requestCameraPermissionIfNeeded(() -> CameraUtils.capturePhotoToGallery(mainActivity, socketServer)));
+        commandHandlers.put(CommandType.TAKE_PHOTO, (client, args) -> {
+            String[] parts = args == null ? new String[0] : args.split("\\s+");
+            boolean toGallery = parts.length > 0 && parts[parts.length - 1].equalsIgnoreCase("gallery");
+            if (parts.length > (toGallery ? 2 : 1)) {
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "Usage: TAKE_PHOTO [lens] [gallery]"));
+                return;
+            }
+            String lens = parts.length > (toGallery ? 1 : 0) ? parts[0] : null;
+            if (toGallery) {
+                // The image is also archived in the device gallery, in the background after the client received it.
+                handler.post(() -> mainActivity.requestGalleryPermissionsIfNeeded(client, () -> CameraUtils.capturePhotoToGallery(mainActivity, client, lens)));
+            } else {
+                handler.post(() -> mainActivity.requestCameraPermissionIfNeeded(client, () -> CameraUtils.capturePhotoAutomatically(mainActivity, client, lens)));
+            }
         });
 
-        commandHandlers.put(CommandType.GET_PROP, () -> {
+        commandHandlers.put(CommandType.GET_PROP, (client, args) -> {
             String props = GetpropUtils.getProp();
-            Log.d("GetProp", "Properties fetched: " + props);
-            SocketServer.answerToClient(new Response(Response.ResponseType.TEXT, props));
+            EventLog.record(EventLog.Event.PROPS_FETCHED, props.length(), null);
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, props));
         });
+
+        commandHandlers.put(CommandType.STATS, (client, args) -> {
+            String stats = socketServer.getStats().format(socketServer.getActiveConnections());
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, stats));
+        });
+
+        commandHandlers.put(CommandType.GALLERY_STATUS, (client, args) -> {
+            String status = CameraUtils.getGalleryWriter(mainActivity).formatStatus();
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, status));
+        });
+
+        commandHandlers.put(CommandType.LIST_CAMERAS, (client, args) ->
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, CameraCatalog.get(mainActivity).format())));
+
+        captureScheduler = new CaptureScheduler(mainActivity, handler, captureStore, CameraUtils.getCameraReservations());
+
+        commandHandlers.put(CommandType.SCHEDULE, (client, args) -> {
+            String[] parts = args == null ? new String[0] : args.split("\\s+");
+            Long intervalMs = parts.length >= 2 ? parseNumber(parts[0]) : null;
+            Long count = parts.length >= 2 ? parseNumber(parts[1]) : null;
+            if (intervalMs == null || count == null || intervalMs < Constants.MIN_SCHEDULE_INTERVAL_MS
+                    || count < 1 || count > Constants.MAX_SCHEDULE_COUNT) {
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR,
+                        "Usage: SCHEDULE interval_ms(>=" + Constants.MIN_SCHEDULE_INTERVAL_MS + ") count(1-"
+                                + Constants.MAX_SCHEDULE_COUNT + ") [fast|quality] [lens]"));
+                return;
+            }
+            int next = 2;
+            CaptureProfile profile = parts.length > next ? CaptureProfile.fromString(parts[next]) : null;
+            if (profile != null) {
+                next++;
+            } else {
+                profile = CaptureProfile.FAST;
+            }
+            String lens = parts.length > next ? parts[next] : null;
+            CameraCatalog.CameraDescriptor camera = CameraCatalog.get(mainActivity).find(lens);
+            if (camera == null) {
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "No camera matches: " + lens));
+                return;
+            }
+            CaptureProfile jobProfile = profile;
+            handler.post(() -> mainActivity.requestCameraPermissionIfNeeded(client, () -> {
+                String refused = captureScheduler.checkSchedulable(jobProfile, camera);
+                if (refused != null) {
+                    SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, refused));
+                    return;
+                }
+                int jobId = captureScheduler.schedule(intervalMs, count.intValue(), jobProfile, camera);
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, "job=" + jobId));
+            }));
+        });
+
+        commandHandlers.put(CommandType.CANCEL_JOB, (client, args) -> {
+            Long jobId = parseNumber(args);
+            boolean cancelled = jobId != null && captureScheduler.cancel(jobId.intValue());
+            SocketServer.answerToClient(client, cancelled
+                    ? new Response(Response.ResponseType.TEXT, "Job " + jobId + " cancelled")
+                    : new Response(Response.ResponseType.ERROR, "No running job: " + args));
+        });
+
+        commandHandlers.put(CommandType.JOBS, (client, args) ->
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, captureScheduler.formatJobs())));
+
+        commandHandlers.put(CommandType.SUBSCRIBE, (client, args) -> {
+            String[] parts = args == null ? new String[0] : args.split("\\s+");
+            Long jobId = parts.length >= 1 ? parseNumber(parts[0]) : null;
+            boolean sendAll = parts.length == 2 && parts[1].equalsIgnoreCase("all");
+            if (jobId == null || parts.length > 2 || (parts.length == 2 && !sendAll)) {
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "Usage: SUBSCRIBE job_id [all]"));
+                return;
+            }
+            CaptureSubscription subscription = new CaptureSubscription(captureStore, jobId.intValue(), !sendAll);
+            captureStore.addListener(subscription);
+            if (!captureStore.isActive(jobId.intValue())) {
+                subscription.onJobFinished(jobId.intValue());
+            }
+            SocketServer.streamToClient(client, subscription);
+        });
+
+        commandHandlers.put(CommandType.FETCH, (client, args) -> {
+            String[] parts = args == null ? new String[0] : args.split("\\s+");
+            boolean sendAll = parts.length > 0 && parts[parts.length - 1].equalsIgnoreCase("all");
+            if (sendAll) {
+                parts = Arrays.copyOf(parts, parts.length - 1);
+            }
+            Long jobId = parts.length >= 1 ? parseNumber(parts[0]) : null;
+            Long afterId = parts.length >= 2 ? parseNumber(parts[1]) : Long.valueOf(0);
+            Long max = parts.length >= 3 ? parseNumber(parts[2]) : Long.valueOf(Constants.MAX_FETCH_BATCH);
+            if (jobId == null || afterId == null || max == null || max < 1) {
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "Usage: FETCH job_id [after_capture_id] [max] [all]"));
+                return;
+            }
+            List<CaptureStore.Capture> captures = captureStore.fetch(jobId.intValue(), afterId,
+                    (int) Math.min(max, Constants.MAX_FETCH_BATCH));
+            // The client holds after_capture_id from its previous batch, so the batch is compared with it first.
+            CaptureStore.Capture previous = afterId > 0 ? captureStore.get(jobId.intValue(), afterId) : null;
+            FrameDeduplicator deduplicator = new FrameDeduplicator(!sendAll);
+            SocketServer.streamToClient(client, c -> {
+                if (previous != null) {
+                    deduplicator.seed(previous);
+                }
+                for (CaptureStore.Capture capture : captures) {
+                    SocketServer.writeResponse(c, deduplicator.toResponse(capture));
+                }
+                long last = captures.isEmpty() ? afterId : captures.get(captures.size() - 1).id;
+                SocketServer.writeResponse(c, new Response(Response.ResponseType.TEXT,
+                        captures.size() + " frame(s), " + deduplicator.getUnchanged() + " unchanged, last=" + last));
+            });
+        });
+
+        motionMonitor = new MotionMonitor(mainActivity, handler, captureStore, CameraUtils.getCameraReservations());
+
+        commandHandlers.put(CommandType.MOTION_START, (client, args) -> {
+            // Positional, so a numeric camera ID from LIST_CAMERAS is never mistaken for the trigger.
+            String[] parts = args == null ? new String[0] : args.split("\\s+");
+            Long percent = parts.length >= 1 ? parseNumber(parts[0]) : null;
+            String lens = parts.length >= 2 ? parts[1] : null;
+            float[] region = parts.length >= 3 ? parseRegion(parts[2]) : null;
+            if ((parts.length >= 1 && (percent == null || percent < 1 || percent > 100))
+                    || (parts.length >= 3 && region == null) || parts.length > 3) {
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR,
+                        "Usage: MOTION_START [trigger_percent(1-100) [lens [left,top,right,bottom]]]"));
+                return;
+            }
+            float triggerPercent = percent != null ? percent : Constants.MOTION_DEFAULT_TRIGGER_PERCENT;
+            CameraCatalog.CameraDescriptor camera = CameraCatalog.get(mainActivity).find(lens);
+            if (camera == null) {
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "No camera matches: " + lens));
+                return;
+            }
+            // Answered once the camera is bound, so a failed bind is reported instead of a job that never runs.
+            handler.post(() -> mainActivity.requestCameraPermissionIfNeeded(client, () -> motionMonitor.start(camera, triggerPercent, region,
+                    jobId -> SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, "job=" + jobId)),
+                    error -> SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, error)))));
+        });
+
+        commandHandlers.put(CommandType.MOTION_STOP, (client, args) -> handler.post(() -> {
+            String summary = motionMonitor.stop();
+            SocketServer.answerToClient(client, summary != null
+                    ? new Response(Response.ResponseType.TEXT, summary)
+                    : new Response(Response.ResponseType.ERROR, "Motion detection is not running"));
+        }));
+
+        looperMonitor = new MainLooperMonitor(handler);
+
+        commandHandlers.put(CommandType.LOOPER_STATS, (client, args) -> {
+            if ("start".equalsIgnoreCase(args)) {
+                looperMonitor.start();
+            } else if ("stop".equalsIgnoreCase(args)) {
+                looperMonitor.stop();
+            } else if (args != null) {
+                SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "Usage: LOOPER_STATS [start|stop]"));
+                return;
+            }
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, looperMonitor.format()));
+        });
+
+        commandHandlers.put(CommandType.KEEPALIVE, (client, args) -> {
+            client.getConnection().setKeepAlive(true);
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, "keepalive"));
+        });
+
+        commandHandlers.put(CommandType.DUMP_LOG, (client, args) -> {
+            int max = Constants.EVENT_LOG_DUMP_DEFAULT;
+            EventLog.Level level = EventLog.Level.DEBUG;
+            for (String part : args == null ? new String[0] : args.split("\\s+")) {
+                Long number = parseNumber(part);
+                EventLog.Level parsedLevel = EventLog.Level.fromString(part);
+                if (number != null && number > 0) {
+                    max = (int) Math.min(number, Constants.EVENT_LOG_CAPACITY);
+                } else if (parsedLevel != null) {
+                    level = parsedLevel;
+                } else {
+                    SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR,
+                            "Usage: DUMP_LOG [max] [debug|info|warn|error]"));
+                    return;
+                }
+            }
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.TEXT, EventLog.dump(max, level)));
+        });
+    }
+
+    /**
+     * Stops the scheduled capture jobs, motion-triggered capture and main thread tracing.
+     * Must be called on the main thread.
+     */
+    public void shutdown() {
+        if (captureScheduler != null) {
+            captureScheduler.shutdown();
+        }
+        if (motionMonitor != null) {
+            motionMonitor.shutdown();
+        }
+        if (looperMonitor != null) {
+            looperMonitor.shutdown();
+        }
+    }
+
+    /**
+     * Parses the region of interest of MOTION_START, "left,top,right,bottom" in percent of the frame.
+     *
+     * @return The region as fractions, or null if the text is not a valid region.
+     */
+    private static float[] parseRegion(String text) {
+        String[] parts = text.split(",");
+        if (parts.length != 4) {
+            return null;
+        }
+        float[] region = new float[4];
+        for (int i = 0; i < 4; i++) {
+            Long percent = parseNumber(parts[i]);
+            if (percent == null || percent > 100) {
+                return null;
+            }
+            region[i] = percent / 100f;
+        }
+        return region[0] < region[2] && region[1] < region[3] ? region : null;
+    }
+
+    /**
+     * Parses a non-negative decimal number sent by a client.
+     *
+     * @return The number, or null if the text is missing or not a valid number.
+     */
+    private static Long parseNumber(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            long value = Long.parseLong(text.trim());
+            return value >= 0 ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
-     * Handles a command received as a string.
+     * Handles a command received as a string, e.g. "TAKE_PHOTO front".
+     * The first word selects the command; the rest of the line is passed to the action as its arguments.
      * If the command is valid, the corresponding action is executed.
      * If the command is invalid or missing, an error response is sent to the client.
      *
+     * @param client The response handle of the command, bound to its position on the connection.
      * @param commandStr The command string received from the client.
      */
-    public void handleCommand(String commandStr) {
-        CommandType command = CommandType.fromString(commandStr);
+    public void handleCommand(ResponseHandle client, String commandStr) {
+        String line = commandStr.trim();
+        int separator = line.indexOf(' ');
+        String name = separator == -1 ? line : line.substring(0, separator);
+        String args = separator == -1 ? null : line.substring(separator + 1).trim();
+        CommandType command = CommandType.fromString(name);
         if (command == null) {
-            SocketServer.answerToClient(new Response(Response.ResponseType.ERROR, "Unknown command: " + commandStr));
+            EventLog.record(EventLog.Event.COMMAND_UNKNOWN, line.length(), null);
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "Unknown command: " + commandStr));
             return;
         }
 
-        Runnable action = commandHandlers.get(command);
+        EventLog.record(EventLog.Event.COMMAND_RECEIVED, command.ordinal(), args == null ? 0 : args.length(), null);
+        BiConsumer<ResponseHandle, String> action = commandHandlers.get(command);
         if (action != null) {
-            action.run();
+            action.accept(client, args == null || args.isEmpty() ? null : args);
         } else {
-            SocketServer.answerToClient(new Response(Response.ResponseType.ERROR, "No handler registered for command: " + commandStr));
+            SocketServer.answerToClient(client, new Response(Response.ResponseType.ERROR, "No handler registered for command: " + commandStr));
         }
     }
 }
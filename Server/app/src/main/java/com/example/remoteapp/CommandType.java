@@ -5,7 +5,20 @@ package com.example.remoteapp;
 public enum CommandType {
     OPEN_CAMERA,
     TAKE_PHOTO,
-    GET_PROP;
+    GET_PROP,
+    STATS,
+    GALLERY_STATUS,
+    LIST_CAMERAS,
+    SCHEDULE,
+    CANCEL_JOB,
+    JOBS,
+    SUBSCRIBE,
+    FETCH,
+    MOTION_START,
+    MOTION_STOP,
+    LOOPER_STATS,
+    DUMP_LOG,
+    KEEPALIVE;
 
     /**
     * Converts a string into a corresponding CommandType.
@@ -0,0 +1,54 @@
+package com.example.remoteapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe counters describing how client connections ended,
+ * in particular the ones the server had to kill or reject.
+ */
+public class ConnectionStats {
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejectedBusy = new AtomicLong();
+    private final AtomicLong connectTimeouts = new AtomicLong();
+    private final AtomicLong readTimeouts = new AtomicLong();
+    private final AtomicLong writeTimeouts = new AtomicLong();
+    private final AtomicLong responseTimeouts = new AtomicLong();
+    private final AtomicLong oversizedCommands = new AtomicLong();
+    private final AtomicLong keepAliveIdleCloses = new AtomicLong();
+
+    public void recordAccepted() { accepted.incrementAndGet(); }
+    public void recordRejectedBusy() { rejectedBusy.incrementAndGet(); }
+    public void recordConnectTimeout() { connectTimeouts.incrementAndGet(); }
+    public void recordReadTimeout() { readTimeouts.incrementAndGet(); }
+    public void recordWriteTimeout() { writeTimeouts.incrementAndGet(); }
+    public void recordResponseTimeout() { responseTimeouts.incrementAndGet(); }
+    public void recordOversizedCommand() { oversizedCommands.incrementAndGet(); }
+    public void recordKeepAliveIdle() { keepAliveIdleCloses.incrementAndGet(); }
+
+    public long getAccepted() { return accepted.get(); }
+    public long getRejectedBusy() { return rejectedBusy.get(); }
+    public long getConnectTimeouts() { return connectTimeouts.get(); }
+    public long getReadTimeouts() { return readTimeouts.get(); }
+    public long getWriteTimeouts() { return writeTimeouts.get(); }
+    public long getResponseTimeouts() { return responseTimeouts.get(); }
+    public long getOversizedCommands() { return oversizedCommands.get(); }
+    public long getKeepAliveIdleCloses() { return keepAliveIdleCloses.get(); }
+
+    /**
+     * Formats all counters as "name: value" lines, ready to be sent to the client.
+     *
+     * @param activeConnections The number of connections currently open.
+     */
+    public String format(int activeConnections) {
+        return "active: " + activeConnections + "\n"
+                + "accepted: " + getAccepted() + "\n"
+                + "rejected_busy: " + getRejectedBusy() + "\n"
+                + "connect_timeouts: " + getConnectTimeouts() + "\n"
+                + "read_timeouts: " + getReadTimeouts() + "\n"
+                + "write_timeouts: " + getWriteTimeouts() + "\n"
+                + "response_timeouts: " + getResponseTimeouts() + "\n"
+                + "oversized_commands: " + getOversizedCommands() + "\n"
+                + "keepalive_idle_closes: " + getKeepAliveIdleCloses() + "\n";
+    }
+}
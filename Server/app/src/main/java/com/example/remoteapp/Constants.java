@@ -8,4 +8,63 @@ public class Constants {
     public static final String COMMAND_OPEN_CAMERA = "OPEN_CAMERA";
     public static final String COMMAND_TAKE_PHOTO = "TAKE_PHOTO";
     public static final String COMMAND_GETPROP = "GET_PROP";
+    public static final String COMMAND_STATS = "STATS";
+    public static final String COMMAND_GALLERY_STATUS = "GALLERY_STATUS";
+    public static final String COMMAND_LIST_CAMERAS = "LIST_CAMERAS";
+    public static final String COMMAND_SCHEDULE = "SCHEDULE";
+    public static final String COMMAND_CANCEL_JOB = "CANCEL_JOB";
+    public static final String COMMAND_JOBS = "JOBS";
+    public static final String COMMAND_SUBSCRIBE = "SUBSCRIBE";
+    public static final String COMMAND_FETCH = "FETCH";
+    public static final String COMMAND_MOTION_START = "MOTION_START";
+    public static final String COMMAND_MOTION_STOP = "MOTION_STOP";
+    public static final String COMMAND_LOOPER_STATS = "LOOPER_STATS";
+    public static final String COMMAND_DUMP_LOG = "DUMP_LOG";
+    public static final String COMMAND_KEEPALIVE = "KEEPALIVE";
+
+    // Connection limits (see ServerConfig)
+    public static final int CONNECT_TIMEOUT_MS = 5000;      // whole command line must arrive within this window
+    public static final int READ_TIMEOUT_MS = 3000;         // max silence between two reads
+    public static final int WRITE_TIMEOUT_MS = 15000;       // max time to push one response out
+    public static final int RESPONSE_TIMEOUT_MS = 30000;    // max time a connection may wait for its response
+    public static final int KEEPALIVE_TIMEOUT_MS = 30000;   // max silence between two commands on a KEEPALIVE connection
+    public static final int MAX_COMMAND_LENGTH = 256;       // bytes, excluding the line terminator
+    public static final int MAX_CONCURRENT_CONNECTIONS = 4;
+
+    // Background gallery writes (see GalleryWriter)
+    public static final int GALLERY_BATCH_SIZE = 8;
+    public static final int GALLERY_BATCH_LINGER_MS = 250;  // how long to wait for more images before writing a batch
+
+    // Scheduled capture jobs (see CaptureScheduler, CaptureStore)
+    public static final int MIN_SCHEDULE_INTERVAL_MS = 200;
+    public static final int MAX_SCHEDULE_COUNT = 10000;
+    public static final int MAX_RUNNING_JOBS = 4;           // SCHEDULE is refused while this many jobs are running
+    public static final int MAX_FINISHED_JOBS = 16;         // finished jobs kept for the JOBS listing
+    public static final int CAPTURE_STORE_CAPACITY = 200;   // captures kept on the device, oldest files deleted first
+    public static final int SUBSCRIBER_QUEUE_SIZE = 8;      // frames buffered per subscriber before dropping the oldest
+    public static final int SUBSCRIBER_POLL_MS = 500;
+    public static final int MAX_FETCH_BATCH = 50;
+
+    // Motion-triggered capture (see MotionMonitor, MotionDetector)
+    public static final int MOTION_ANALYSIS_WIDTH = 320;
+    public static final int MOTION_ANALYSIS_HEIGHT = 240;
+    public static final int MOTION_GRID_WIDTH = 32;
+    public static final int MOTION_GRID_HEIGHT = 24;
+    public static final int MOTION_PIXEL_THRESHOLD = 25;           // average luma change for a grid cell to count as changed
+    public static final float MOTION_DEFAULT_TRIGGER_PERCENT = 2f; // share of changed cells that triggers a capture
+    public static final int MOTION_COOLDOWN_MS = 1000;             // minimum time between two motion captures
+
+    // Duplicate frame suppression (see ImageSignature)
+    public static final int DEDUP_GRID_SIZE = 16;                  // signature cells per side
+    public static final int DEDUP_CELL_THRESHOLD = 6;              // average luma change still considered unchanged
+
+    // Main thread load (see SocketServer.updateUI, MainLooperMonitor)
+    public static final int UI_UPDATE_INTERVAL_MS = 100;           // status text is refreshed at most this often
+    public static final int LOOPER_PROBE_INTERVAL_MS = 100;        // how often the main queue delay is sampled
+    public static final int LOOPER_SLOW_MS = 16;                   // one frame at 60 Hz; longer messages or delays count as slow
+
+    // Event log (see EventLog)
+    public static final int EVENT_LOG_CAPACITY = 1024;             // events kept, rounded down to a power of two
+    public static final EventLog.Level EVENT_LOG_MIN_LEVEL = EventLog.Level.DEBUG; // events below this level are not recorded
+    public static final int EVENT_LOG_DUMP_DEFAULT = 100;          // events returned by DUMP_LOG without a count
 }
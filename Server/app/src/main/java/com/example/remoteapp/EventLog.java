@@ -0,0 +1,218 @@
+package com.example.remoteapp;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * In-memory log of recent server events, read back with the DUMP_LOG command.
+ * Events are stored in a ring of preallocated arrays as an event code, two numbers and an optional
+ * reference to an object that already exists (an address, a file, an exception message), so recording
+ * one does not build any string. Text is only produced when the log is read.
+ * Events below the minimum level are dropped before they take the lock.
+ */
+public final class EventLog {
+
+    /** Severity of an event. */
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR;
+
+        /**
+         * Converts a level name or its first letter ("debug", "w", ...) into a Level.
+         *
+         * @return The level, or null if the text matches none.
+         */
+        public static Level fromString(String text) {
+            for (Level level : values()) {
+                if (level.name().equalsIgnoreCase(text) || level.name().substring(0, 1).equalsIgnoreCase(text)) {
+                    return level;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** The events the server records, with their level and the names of their two numbers (null if unused). */
+    public enum Event {
+        SERVER_STARTED(Level.INFO, "port", null),
+        SERVER_ERROR(Level.ERROR, null, null),
+        ACCEPT_FAILED(Level.ERROR, null, null),
+        CLIENT_CONNECTED(Level.DEBUG, "port", "active"),
+        CLIENT_REJECTED_BUSY(Level.WARN, "port", null),
+        CLIENT_IDLE(Level.WARN, "port", null),
+        CLIENT_FAILED(Level.WARN, "port", null),
+        COMMAND_RECEIVED(Level.INFO, "command", "args_length"),
+        COMMAND_TOO_LONG(Level.WARN, "port", null),
+        COMMAND_UNKNOWN(Level.WARN, "length", null),
+        PROPS_FETCHED(Level.DEBUG, "length", null),
+        RESPONSE_SENT(Level.DEBUG, "type", "bytes"),
+        RESPONSE_DROPPED(Level.WARN, "type", null),
+        RESPONSE_FAILED(Level.WARN, "type", null),
+        STREAM_DROPPED(Level.WARN, null, null),
+        STREAM_ENDED(Level.WARN, "port", null),
+        IMAGE_MISSING(Level.ERROR, null, null),
+        WRITE_TIMEOUT(Level.WARN, "port", null),
+        PHOTO_CAPTURED(Level.DEBUG, "bytes", null),
+        PHOTO_FAILED(Level.ERROR, "error", null),
+        CAMERA_QUERY_FAILED(Level.ERROR, null, null),
+        CAMERA_BOUND(Level.DEBUG, "bound", null),
+        CAMERA_CONCURRENT_FALLBACK(Level.WARN, null, null),
+        CAMERA_BIND_FAILED(Level.ERROR, null, null),
+        JOB_SCHEDULED(Level.INFO, "job", "interval_ms"),
+        JOB_CAPTURE_FAILED(Level.WARN, "job", "error"),
+        JOB_FINISHED(Level.INFO, "job", "captured"),
+        MOTION_STARTED(Level.INFO, "job", null),
+        MOTION_START_FAILED(Level.ERROR, "job", null),
+        MOTION_DETECTED(Level.DEBUG, "job", "score_permille"),
+        MOTION_CAPTURE_FAILED(Level.WARN, "job", "error"),
+        GALLERY_PUBLISHED(Level.DEBUG, "images", null),
+        GALLERY_COPY_FAILED(Level.WARN, null, null),
+        GALLERY_BATCH_FAILED(Level.ERROR, "images", null),
+        FILE_DELETE_FAILED(Level.WARN, null, null);
+
+        final Level level;
+        final String firstName;
+        final String secondName;
+
+        Event(Level level, String firstName, String secondName) {
+            this.level = level;
+            this.firstName = firstName;
+            this.secondName = secondName;
+        }
+    }
+
+    private static final int CAPACITY = Integer.highestOneBit(Constants.EVENT_LOG_CAPACITY);
+    private static final long[] timestamps = new long[CAPACITY];
+    private static final Event[] events = new Event[CAPACITY];
+    private static final long[] firstValues = new long[CAPACITY];
+    private static final long[] secondValues = new long[CAPACITY];
+    private static final Object[] details = new Object[CAPACITY];
+    private static long recorded;
+    private static volatile Level minLevel = Constants.EVENT_LOG_MIN_LEVEL;
+
+    private EventLog() {
+    }
+
+    public static void setMinLevel(Level level) {
+        minLevel = level;
+    }
+
+    public static Level getMinLevel() {
+        return minLevel;
+    }
+
+    public static void record(Event event) {
+        record(event, 0, 0, null);
+    }
+
+    public static void record(Event event, long first, Object detail) {
+        record(event, first, 0, detail);
+    }
+
+    /**
+     * Records an event, overwriting the oldest one once the ring is full.
+     *
+     * @param event What happened.
+     * @param first The event's first number (see {@link Event}), or 0.
+     * @param second The event's second number, or 0.
+     * @param detail An existing object describing the event, formatted only when the log is read; may be null.
+     */
+    public static void record(Event event, long first, long second, Object detail) {
+        if (event.level.ordinal() < minLevel.ordinal()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (EventLog.class) {
+            int slot = (int) (recorded & (CAPACITY - 1));
+            timestamps[slot] = now;
+            events[slot] = event;
+            firstValues[slot] = first;
+            secondValues[slot] = second;
+            details[slot] = detail;
+            recorded++;
+        }
+    }
+
+    /**
+     * Formats the most recent events, oldest first, one per line.
+     *
+     * @param max Maximum number of events to return.
+     * @param level Only events at this level or above are returned.
+     */
+    public static String dump(int max, Level level) {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        StringBuilder builder = new StringBuilder();
+        synchronized (EventLog.class) {
+            long oldest = Math.max(0, recorded - CAPACITY);
+            // Walk back from the newest event to find where the max matching events start.
+            long start = recorded;
+            int matching = 0;
+            while (start > oldest && matching < max) {
+                start--;
+                if (events[(int) (start & (CAPACITY - 1))].level.ordinal() >= level.ordinal()) {
+                    matching++;
+                }
+            }
+            for (long i = start; i < recorded; i++) {
+                int slot = (int) (i & (CAPACITY - 1));
+                if (events[slot].level.ordinal() >= level.ordinal()) {
+                    appendEvent(builder, timeFormat, slot);
+                }
+            }
+            builder.append("recorded: ").append(recorded)
+                    .append(", overwritten: ").append(oldest)
+                    .append(", min_level: ").append(minLevel.name().toLowerCase(Locale.ROOT))
+                    .append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Formats the most recent event, or returns null if none was recorded.
+     */
+    public static String latest() {
+        synchronized (EventLog.class) {
+            if (recorded == 0) {
+                return null;
+            }
+            StringBuilder builder = new StringBuilder();
+            appendEvent(builder, new SimpleDateFormat("HH:mm:ss", Locale.US), (int) ((recorded - 1) & (CAPACITY - 1)));
+            return builder.toString().trim();
+        }
+    }
+
+    private static void appendEvent(StringBuilder builder, SimpleDateFormat timeFormat, int slot) {
+        Event event = events[slot];
+        builder.append(timeFormat.format(new Date(timestamps[slot])))
+                .append(' ').append(event.level.name().charAt(0))
+                .append(' ').append(event.name().toLowerCase(Locale.ROOT));
+        if (event.firstName != null) {
+            builder.append(' ').append(event.firstName).append('=');
+            appendValue(builder, event.firstName, firstValues[slot]);
+        }
+        if (event.secondName != null) {
+            builder.append(' ').append(event.secondName).append('=');
+            appendValue(builder, event.secondName, secondValues[slot]);
+        }
+        if (details[slot] != null) {
+            builder.append(' ').append(details[slot]);
+        }
+        builder.append('\n');
+    }
+
+    /**
+     * Appends a number, decoding the ones that hold an enum ordinal.
+     */
+    private static void appendValue(StringBuilder builder, String name, long value) {
+        if (name.equals("command") && value >= 0 && value < CommandType.values().length) {
+            builder.append(CommandType.values()[(int) value].name());
+        } else if (name.equals("type") && value >= 0 && value < Response.ResponseType.values().length) {
+            builder.append(Response.ResponseType.values()[(int) value].name());
+        } else {
+            builder.append(value);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.remoteapp;
+
+/**
+ * Remembers the last frame sent to one client and turns captures that look the same into
+ * UNCHANGED responses, so a static scene costs a few bytes per capture instead of a full JPEG.
+ * Not thread-safe: use one instance per stream.
+ */
+public class FrameDeduplicator {
+
+    private final boolean enabled;
+    private ImageSignature lastSignature;
+    private long lastSentId = -1;
+    private int unchanged;
+
+    /**
+     * @param enabled false to send every capture as a FRAME.
+     */
+    public FrameDeduplicator(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Treats a capture as the last frame sent, e.g. the last one of the previous batch, which the client already has.
+     * Computes its signature, so call it on the thread that writes the responses.
+     */
+    public void seed(CaptureStore.Capture capture) {
+        if (enabled) {
+            lastSignature = capture.getSignature();
+            lastSentId = capture.id;
+        }
+    }
+
+    /**
+     * Returns the response to send for a capture: a FRAME, or UNCHANGED with the ID of the
+     * previously sent frame if the capture matches it.
+     */
+    public Response toResponse(CaptureStore.Capture capture) {
+        if (!enabled) {
+            return new Response(capture.id, capture.file);
+        }
+        ImageSignature signature = capture.getSignature();
+        if (signature != null && signature.matches(lastSignature, Constants.DEDUP_CELL_THRESHOLD)) {
+            unchanged++;
+            return Response.unchanged(lastSentId);
+        }
+        lastSignature = signature;
+        lastSentId = capture.id;
+        return new Response(capture.id, capture.file);
+    }
+
+    /**
+     * Returns the number of captures replaced by UNCHANGED responses.
+     */
+    public int getUnchanged() {
+        return unchanged;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.remoteapp;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.RemoteException;
+import android.provider.MediaStore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies captured images into the public gallery on a background thread, off the response path.
+ * Images are collected into batches; each one is inserted as a pending MediaStore entry
+ * (IS_PENDING = 1, invisible to other apps while being written) and the whole batch is then
+ * published with a single applyBatch call. The outcome is kept in counters and reported by GALLERY_STATUS.
+ */
+public class GalleryWriter {
+
+    private final ContentResolver contentResolver;
+    private final BlockingQueue<File> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile String lastError = "none";
+
+    /**
+     * Creates the writer and starts its background thread.
+     *
+     * @param context Any context; only its ContentResolver is kept.
+     */
+    public GalleryWriter(Context context) {
+        this.contentResolver = context.getApplicationContext().getContentResolver();
+        Thread worker = new Thread(this::run, "GalleryWriter");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues an image to be copied into the gallery. The source file is deleted once it is published.
+     *
+     * @param imageFile A JPEG file in app storage.
+     */
+    public void enqueue(File imageFile) {
+        queue.offer(imageFile);
+    }
+
+    /**
+     * Returns the saved/failed/pending counters and the last error, as "name: value" lines.
+     */
+    public String formatStatus() {
+        return "saved: " + saved.get() + "\n"
+                + "failed: " + failed.get() + "\n"
+                + "pending: " + queue.size() + "\n"
+                + "last_error: " + lastError + "\n";
+    }
+
+    private void run() {
+        List<File> batch = new ArrayList<>(Constants.GALLERY_BATCH_SIZE);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                long lingerEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.GALLERY_BATCH_LINGER_MS);
+                while (batch.size() < Constants.GALLERY_BATCH_SIZE) {
+                    File next = queue.poll(lingerEnd - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Inserts every image of the batch as a pending entry, then publishes all of them at once.
+     * Every image that is not published counts as failed, and its entry and source file are removed:
+     * the client already received the image, so a failed copy must not leak app storage.
+     * A RuntimeException (e.g. a SecurityException when storage access was revoked) fails the rest of the batch.
+     */
+    private void writeBatch(List<File> batch) {
+        boolean usePending = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+        List<Uri> written = new ArrayList<>(batch.size());
+        boolean published = false;
+        try {
+            for (File imageFile : batch) {
+                Uri uri = insertPending(imageFile, usePending);
+                if (uri != null) {
+                    written.add(uri);
+                }
+            }
+            published = !written.isEmpty() && (!usePending || publish(written));
+        } catch (RuntimeException e) {
+            lastError = "batch failed: " + e.getMessage();
+            EventLog.record(EventLog.Event.GALLERY_BATCH_FAILED, batch.size(), lastError);
+        }
+        if (!published) {
+            for (Uri uri : written) {
+                deleteQuietly(uri);
+            }
+            written.clear();
+        }
+        for (File source : batch) {
+            if (!source.delete()) {
+                EventLog.record(EventLog.Event.FILE_DELETE_FAILED, 0, source);
+            }
+        }
+        saved.addAndGet(written.size());
+        failed.addAndGet(batch.size() - written.size());
+        if (published) {
+            EventLog.record(EventLog.Event.GALLERY_PUBLISHED, written.size(), null);
+        }
+    }
+
+    /**
+     * Creates a gallery entry for the image and copies its bytes.
+     *
+     * @return The entry URI, or null if the copy failed (the entry is removed in that case).
+     */
+    private Uri insertPending(File imageFile, boolean usePending) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(MediaStore.Images.Media.DISPLAY_NAME, imageFile.getName());
+        contentValues.put(MediaStore.Images.Media.MIME_TYPE, "image/jpeg");
+        if (usePending) {
+            contentValues.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_DCIM);
+            contentValues.put(MediaStore.Images.Media.IS_PENDING, 1);
+        }
+        Uri uri = contentResolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, contentValues);
+        if (uri == null) {
+            recordError("insert returned null for " + imageFile.getName());
+            return null;
+        }
+        try (InputStream in = new FileInputStream(imageFile);
+             OutputStream out = contentResolver.openOutputStream(uri)) {
+            if (out == null) {
+                throw new IOException("no output stream for " + uri);
+            }
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+            return uri;
+        } catch (IOException e) {
+            deleteQuietly(uri);
+            recordError("copy failed for " + imageFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Clears IS_PENDING on all entries in one batch operation, so they appear in the gallery together.
+     */
+    private boolean publish(List<Uri> uris) {
+        ContentValues published = new ContentValues();
+        published.put(MediaStore.Images.Media.IS_PENDING, 0);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(uris.size());
+        for (Uri uri : uris) {
+            operations.add(ContentProviderOperation.newUpdate(uri).withValues(published).build());
+        }
+        try {
+            contentResolver.applyBatch(MediaStore.AUTHORITY, operations);
+            return true;
+        } catch (RemoteException | OperationApplicationException e) {
+            lastError = "publish failed: " + e.getMessage();
+            EventLog.record(EventLog.Event.GALLERY_BATCH_FAILED, uris.size(), lastError);
+            return false;
+        }
+    }
+
+    /**
+     * Removes an unpublished gallery entry. Failures are only logged, the image is already counted as failed.
+     */
+    private void deleteQuietly(Uri uri) {
+        try {
+            contentResolver.delete(uri, null, null);
+        } catch (RuntimeException e) {
+            EventLog.record(EventLog.Event.FILE_DELETE_FAILED, 0, uri);
+        }
+    }
+
+    private void recordError(String message) {
+        lastError = message;
+        EventLog.record(EventLog.Event.GALLERY_COPY_FAILED, 0, message);
+    }
+}
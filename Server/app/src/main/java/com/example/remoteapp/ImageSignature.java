@@ -0,0 +1,90 @@
+package com.example.remoteapp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.File;
+
+/**
+ * Compact block hash of an image: the average luma of each cell of a small grid.
+ * Two captures of a static scene produce signatures whose cells differ by no more than
+ * sensor and compression noise, which lets the server skip re-sending identical frames.
+ */
+public class ImageSignature {
+
+    private final byte[] cells;
+
+    private ImageSignature(byte[] cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * Computes the signature of a JPEG file. The JPEG is decoded at 1/8 scale, which
+     * the decoder does directly from the DCT coefficients, so this is much cheaper than a full decode.
+     *
+     * @param jpegFile The image to hash.
+     * @return The signature, or null if the file cannot be decoded.
+     */
+    public static ImageSignature fromJpeg(File jpegFile) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 8;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapFactory.decodeFile(jpegFile.getAbsolutePath(), options);
+        if (bitmap == null) {
+            return null;
+        }
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            return fromArgb(pixels, width, height);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Computes the signature of ARGB pixels.
+     */
+    public static ImageSignature fromArgb(int[] pixels, int width, int height) {
+        int grid = Constants.DEDUP_GRID_SIZE;
+        int[] sums = new int[grid * grid];
+        int[] counts = new int[grid * grid];
+        for (int y = 0; y < height; y++) {
+            int rowBase = (y * grid / height) * grid;
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[y * width + x];
+                // Integer approximation of Rec. 601 luma
+                int luma = (77 * ((pixel >> 16) & 0xFF) + 150 * ((pixel >> 8) & 0xFF) + 29 * (pixel & 0xFF)) >> 8;
+                int cell = rowBase + x * grid / width;
+                sums[cell] += luma;
+                counts[cell]++;
+            }
+        }
+        byte[] cells = new byte[grid * grid];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = (byte) (counts[i] == 0 ? 0 : sums[i] / counts[i]);
+        }
+        return new ImageSignature(cells);
+    }
+
+    /**
+     * Returns true if no cell differs from the other signature by more than the threshold.
+     *
+     * @param other The signature to compare with.
+     * @param cellThreshold Maximum allowed difference of a cell's average luma (0-255).
+     */
+    public boolean matches(ImageSignature other, int cellThreshold) {
+        if (other == null || other.cells.length != cells.length) {
+            return false;
+        }
+        for (int i = 0; i < cells.length; i++) {
+            int diff = (cells[i] & 0xFF) - (other.cells[i] & 0xFF);
+            if (diff > cellThreshold || -diff > cellThreshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -6,6 +6,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import android.Manifest;
 import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.TextView;
@@ -17,6 +18,7 @@ import java.util.Arrays;
 public class MainActivity extends AppCompatActivity {
     private SocketServer socketServer;
     private TextView messageTextView;
+    private ResponseHandle pendingPermissionClient;
 
     /**
      * Called when the activity is first created. Initializes the UI and starts the socket server.
@@ -41,6 +43,7 @@ public class MainActivity extends AppCompatActivity {
         if (socketServer != null) {
             socketServer.stop();
         }
+        CameraUtils.releaseSessionManager();
     }
 
     /**
@@ -68,11 +71,10 @@ public class MainActivity extends AppCompatActivity {
      */
     private void handleOpenCameraPermissionResult(int[] grantResults) {
         if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+            // The OPEN_CAMERA client was already answered with "Camera access not authorized".
             CameraUtils.openCamera(this);
-            SocketServer.answerToClient(new Response(Response.ResponseType.TEXT, "Permission granted. Camera opened."));
         } else {
             Toast.makeText(this, "Camera permission denied", Toast.LENGTH_SHORT).show();
-            SocketServer.answerToClient(new Response(Response.ResponseType.ERROR, "Camera permission denied."));
         }
     }
     /**
@@ -81,33 +83,68 @@ public class MainActivity extends AppCompatActivity {
      * @param grantResults The results for the camera permission request.
      */
     private void handleTakePhotoPermissionResult(int[] grantResults) {
-        if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+        if (allGranted(grantResults)) {
             //Log.d("Permissions log", "Camera permission granted.");
             if (CameraUtils.getPendingActionAfterPermission() != null) {
                 CameraUtils.runPendingActionAfterPermission();
                 CameraUtils.setPendingActionAfterPermission(null);
             }
         } else {
-            Log.e("Permissions log", "Camera permission denied.");
-            Toast.makeText(this, "Camera permission denied", Toast.LENGTH_SHORT).show();
-            SocketServer.answerToClient(new Response(Response.ResponseType.ERROR, "Camera permission denied."));
+            // The camera is always the first requested permission; the other one is the gallery's storage permission.
+            String denied = grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED ? "Storage" : "Camera";
+            Log.e("Permissions log", denied + " permission denied.");
+            Toast.makeText(this, denied + " permission denied", Toast.LENGTH_SHORT).show();
+            SocketServer.answerToClient(pendingPermissionClient, new Response(Response.ResponseType.ERROR, denied + " permission denied."));
         }
+        pendingPermissionClient = null;
     }
     /**
      * Requests camera permission if not already granted.
      * If permission is already granted, runs the provided action immediately.
      *
+     * @param client The client waiting for the action, answered with an error if permission is denied.
      * @param onGranted A Runnable to execute if permission is granted.
      */
-    public void requestCameraPermissionIfNeeded(Runnable onGranted) {
-        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA},Constants.CAMERA_PERMISSION_CODE);
-            CameraUtils.setPendingActionAfterPermission(onGranted);
-           // Log.d("CameraX", "requestCameraPermissionIfNeeded called!");
+    public void requestCameraPermissionIfNeeded(ResponseHandle client, Runnable onGranted) {
+        requestPermissionsIfNeeded(client, onGranted, Manifest.permission.CAMERA);
+    }
+
+    /**
+     * Requests the permissions of a capture saved to the gallery: the camera, plus storage writes before Android 10.
+     *
+     * @param client The client waiting for the action, answered with an error if a permission is denied.
+     * @param onGranted A Runnable to execute once all permissions are granted.
+     */
+    public void requestGalleryPermissionsIfNeeded(ResponseHandle client, Runnable onGranted) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            requestPermissionsIfNeeded(client, onGranted, Manifest.permission.CAMERA, Manifest.permission.WRITE_EXTERNAL_STORAGE);
         } else {
-           // Log.d("Permissions log", "CAMERA permission already granted");
-            onGranted.run();
+            requestCameraPermissionIfNeeded(client, onGranted);
+        }
+    }
+
+    private void requestPermissionsIfNeeded(ResponseHandle client, Runnable onGranted, String... permissions) {
+        for (String permission : permissions) {
+            if (ActivityCompat.checkSelfPermission(this, permission) != PackageManager.PERMISSION_GRANTED) {
+                ActivityCompat.requestPermissions(this, permissions, Constants.CAMERA_PERMISSION_CODE);
+                pendingPermissionClient = client;
+                CameraUtils.setPendingActionAfterPermission(onGranted);
+                return;
+            }
+        }
+        onGranted.run();
+    }
+
+    private static boolean allGranted(int[] grantResults) {
+        if (grantResults.length == 0) {
+            return false;
+        }
+        for (int result : grantResults) {
+            if (result != PackageManager.PERMISSION_GRANTED) {
+                return false;
+            }
         }
+        return true;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.example.remoteapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.Printer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how busy the main thread is, to see what the server costs the UI.
+ * Two numbers are traced while the monitor runs:
+ * - dispatch time: how long each main looper message runs, from the looper's message logging;
+ * - queue delay: how long a probe posted from a background thread waits before it runs,
+ *   which is the latency any main thread work (UI or camera binding) sees.
+ * The looper builds a log string for every message while logging is set, so the monitor
+ * is only started on demand (LOOPER_STATS start) and should be stopped afterwards.
+ */
+public class MainLooperMonitor implements Printer {
+
+    private final Handler mainHandler;
+    private final ScheduledExecutorService prober =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "LooperProbe"));
+    private ScheduledFuture<?> probeFuture;
+    private long startNanos;
+    private long dispatchStartNanos;  // only used on the main thread
+
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong dispatchTotalNanos = new AtomicLong();
+    private final AtomicLong dispatchMaxNanos = new AtomicLong();
+    private final AtomicLong slowMessages = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong delayTotalNanos = new AtomicLong();
+    private final AtomicLong delayMaxNanos = new AtomicLong();
+    private final AtomicLong slowProbes = new AtomicLong();
+
+    /**
+     * @param mainHandler Handler of the main thread.
+     */
+    public MainLooperMonitor(Handler mainHandler) {
+        this.mainHandler = mainHandler;
+    }
+
+    /**
+     * Resets the counters and starts tracing.
+     */
+    public synchronized void start() {
+        stop();
+        messages.set(0);
+        dispatchTotalNanos.set(0);
+        dispatchMaxNanos.set(0);
+        slowMessages.set(0);
+        probes.set(0);
+        delayTotalNanos.set(0);
+        delayMaxNanos.set(0);
+        slowProbes.set(0);
+        startNanos = System.nanoTime();
+        Looper.getMainLooper().setMessageLogging(this);
+        probeFuture = prober.scheduleAtFixedRate(this::probe, 0, Constants.LOOPER_PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Log.d("MainLooperMonitor", "Main looper tracing started");
+    }
+
+    /**
+     * Stops tracing; the counters keep their values until the next start.
+     */
+    public synchronized void stop() {
+        if (probeFuture == null) {
+            return;
+        }
+        Looper.getMainLooper().setMessageLogging(null);
+        probeFuture.cancel(false);
+        probeFuture = null;
+        Log.d("MainLooperMonitor", "Main looper tracing stopped");
+    }
+
+    /**
+     * Stops tracing and the probe thread.
+     */
+    public void shutdown() {
+        stop();
+        prober.shutdownNow();
+    }
+
+    /**
+     * Called by the main looper before (">>>>> Dispatching") and after ("<<<<< Finished") every message.
+     */
+    @Override
+    public void println(String line) {
+        long now = System.nanoTime();
+        if (line.startsWith(">")) {
+            dispatchStartNanos = now;
+        } else if (line.startsWith("<") && dispatchStartNanos != 0) {
+            long duration = now - dispatchStartNanos;
+            dispatchStartNanos = 0;
+            messages.incrementAndGet();
+            dispatchTotalNanos.addAndGet(duration);
+            updateMax(dispatchMaxNanos, duration);
+            if (duration > TimeUnit.MILLISECONDS.toNanos(Constants.LOOPER_SLOW_MS)) {
+                slowMessages.incrementAndGet();
+            }
+        }
+    }
+
+    private void probe() {
+        long posted = System.nanoTime();
+        mainHandler.post(() -> {
+            long delay = System.nanoTime() - posted;
+            probes.incrementAndGet();
+            delayTotalNanos.addAndGet(delay);
+            updateMax(delayMaxNanos, delay);
+            if (delay > TimeUnit.MILLISECONDS.toNanos(Constants.LOOPER_SLOW_MS)) {
+                slowProbes.incrementAndGet();
+            }
+        });
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Formats the counters as "name: value" lines, ready to be sent to the client.
+     */
+    public synchronized String format() {
+        if (startNanos == 0) {
+            return "Main looper tracing was never started (LOOPER_STATS start)\n";
+        }
+        long count = messages.get();
+        long probeCount = probes.get();
+        return "tracing: " + (probeFuture != null ? "running" : "stopped") + "\n"
+                + "traced_ms: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + "\n"
+                + "messages: " + count + "\n"
+                + "dispatch_avg_us: " + (count == 0 ? 0 : dispatchTotalNanos.get() / count / 1000) + "\n"
+                + "dispatch_max_us: " + dispatchMaxNanos.get() / 1000 + "\n"
+                + "slow_messages: " + slowMessages.get() + "\n"
+                + "probes: " + probeCount + "\n"
+                + "queue_delay_avg_us: " + (probeCount == 0 ? 0 : delayTotalNanos.get() / probeCount / 1000) + "\n"
+                + "queue_delay_max_us: " + delayMaxNanos.get() / 1000 + "\n"
+                + "slow_probes: " + slowProbes.get() + "\n";
+    }
+}
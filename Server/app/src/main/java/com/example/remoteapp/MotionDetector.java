@@ -0,0 +1,167 @@
+package com.example.remoteapp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Frame-difference motion detector working on the luma (Y) plane of camera frames.
+ * Each frame is downsampled to a small grid of block averages, which is compared with the grid
+ * of the previous frame; motion is reported when the share of changed cells inside the region
+ * of interest reaches the trigger fraction.
+ * Plain Java with no Android dependencies, so it can be exercised on the JVM with synthetic frames.
+ * All buffers are allocated once and reused; processing a frame does not allocate.
+ * Not thread-safe: feed it from a single analysis thread.
+ */
+public class MotionDetector {
+
+    private final int gridWidth;
+    private final int gridHeight;
+    private final int pixelThreshold;
+    private volatile float triggerFraction;
+
+    private int[] previous;
+    private int[] current;
+    private final int[] counts;
+    private int[] columnToCell = new int[0];
+    private int frameWidth = -1;
+    private int frameHeight = -1;
+    private boolean hasPrevious;
+
+    // Region of interest in grid cells, [left, right) x [top, bottom)
+    private volatile int roiLeft;
+    private volatile int roiTop;
+    private volatile int roiRight;
+    private volatile int roiBottom;
+
+    private float lastScore;
+
+    /**
+     * @param gridWidth Number of cells per row of the downsampled frame.
+     * @param gridHeight Number of cell rows of the downsampled frame.
+     * @param pixelThreshold Minimum change of a cell's average luma (0-255) for the cell to count as changed.
+     * @param triggerFraction Share of changed cells (0-1) inside the region of interest that counts as motion.
+     */
+    public MotionDetector(int gridWidth, int gridHeight, int pixelThreshold, float triggerFraction) {
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.pixelThreshold = pixelThreshold;
+        this.triggerFraction = triggerFraction;
+        this.previous = new int[gridWidth * gridHeight];
+        this.current = new int[gridWidth * gridHeight];
+        this.counts = new int[gridWidth * gridHeight];
+        setRegionOfInterest(0f, 0f, 1f, 1f);
+    }
+
+    /**
+     * Restricts detection to part of the frame. Coordinates are fractions of the frame size (0-1).
+     */
+    public void setRegionOfInterest(float left, float top, float right, float bottom) {
+        int cellLeft = clamp((int) (left * gridWidth), 0, gridWidth - 1);
+        int cellTop = clamp((int) (top * gridHeight), 0, gridHeight - 1);
+        roiLeft = cellLeft;
+        roiTop = cellTop;
+        roiRight = clamp((int) Math.ceil(right * gridWidth), cellLeft + 1, gridWidth);
+        roiBottom = clamp((int) Math.ceil(bottom * gridHeight), cellTop + 1, gridHeight);
+    }
+
+    public void setTriggerFraction(float triggerFraction) {
+        this.triggerFraction = triggerFraction;
+    }
+
+    /**
+     * Returns the share of changed cells computed for the last frame.
+     */
+    public float getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     * Forgets the previous frame, e.g. after the camera was rebound.
+     */
+    public void reset() {
+        hasPrevious = false;
+    }
+
+    /**
+     * Processes one frame.
+     *
+     * @param yPlane The luma plane; read with absolute gets, its position is not changed.
+     * @param width Frame width in pixels.
+     * @param height Frame height in pixels.
+     * @param rowStride Bytes between the starts of two rows.
+     * @param pixelStride Bytes between two pixels of a row.
+     * @return true if the frame differs from the previous one by at least the trigger fraction.
+     */
+    public boolean process(ByteBuffer yPlane, int width, int height, int rowStride, int pixelStride) {
+        if (width != frameWidth || height != frameHeight) {
+            resize(width, height);
+        }
+        downsample(yPlane, width, height, rowStride, pixelStride);
+
+        boolean motion = false;
+        if (hasPrevious) {
+            int left = roiLeft, top = roiTop, right = roiRight, bottom = roiBottom;
+            int changed = 0;
+            for (int row = top; row < bottom; row++) {
+                int base = row * gridWidth;
+                for (int col = left; col < right; col++) {
+                    int diff = current[base + col] - previous[base + col];
+                    if (diff > pixelThreshold || -diff > pixelThreshold) {
+                        changed++;
+                    }
+                }
+            }
+            lastScore = changed / (float) ((right - left) * (bottom - top));
+            motion = lastScore >= triggerFraction;
+        }
+
+        int[] swap = previous;
+        previous = current;
+        current = swap;
+        hasPrevious = true;
+        return motion;
+    }
+
+    /**
+     * Averages the luma of every grid cell into {@link #current}.
+     */
+    private void downsample(ByteBuffer yPlane, int width, int height, int rowStride, int pixelStride) {
+        int[] sums = current;
+        Arrays.fill(sums, 0);
+        int[] cellOf = columnToCell;
+        for (int y = 0; y < height; y++) {
+            int cellBase = (int) ((long) y * gridHeight / height) * gridWidth;
+            int offset = y * rowStride;
+            for (int x = 0; x < width; x++) {
+                sums[cellBase + cellOf[x]] += yPlane.get(offset + x * pixelStride) & 0xFF;
+            }
+        }
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = counts[i] == 0 ? 0 : sums[i] / counts[i];
+        }
+    }
+
+    /**
+     * Recomputes the pixel-to-cell mapping and the pixel count of every cell for a new frame size.
+     */
+    private void resize(int width, int height) {
+        frameWidth = width;
+        frameHeight = height;
+        columnToCell = new int[width];
+        for (int x = 0; x < width; x++) {
+            columnToCell[x] = (int) ((long) x * gridWidth / width);
+        }
+        Arrays.fill(counts, 0);
+        for (int y = 0; y < height; y++) {
+            int cellBase = (int) ((long) y * gridHeight / height) * gridWidth;
+            for (int x = 0; x < width; x++) {
+                counts[cellBase + columnToCell[x]]++;
+            }
+        }
+        hasPrevious = false;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
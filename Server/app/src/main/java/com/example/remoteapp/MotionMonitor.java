@@ -0,0 +1,180 @@
+package com.example.remoteapp;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Motion-triggered capture: analyzes the camera's low-resolution luma frames with a MotionDetector
+ * and takes a full photo whenever motion is detected. The photos go into the CaptureStore under
+ * the monitor's job ID, so subscribed clients receive them as they are taken.
+ * While running it reserves its camera (see {@link CameraReservations}), like a scheduled job.
+ * start() and stop() must be called on the main thread.
+ */
+public class MotionMonitor implements ImageAnalysis.Analyzer {
+
+    private final MainActivity mainActivity;
+    private final Handler mainHandler;
+    private final CaptureStore store;
+    private final CameraReservations reservations;
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "MotionAnalysis"));
+    private final MotionDetector detector = new MotionDetector(Constants.MOTION_GRID_WIDTH, Constants.MOTION_GRID_HEIGHT,
+            Constants.MOTION_PIXEL_THRESHOLD, Constants.MOTION_DEFAULT_TRIGGER_PERCENT / 100f);
+
+    private final AtomicBoolean captureInFlight = new AtomicBoolean();
+    private final AtomicInteger frames = new AtomicInteger();
+    private final AtomicInteger triggers = new AtomicInteger();
+    private final AtomicInteger captured = new AtomicInteger();
+    private volatile int jobId = -1;
+    private volatile CameraCatalog.CameraDescriptor camera;
+    private volatile long lastTriggerMs;
+
+    /**
+     * @param mainActivity The activity used for camera access and file storage.
+     * @param mainHandler Handler of the main thread, where captures are started.
+     * @param store Receives the captured images.
+     * @param reservations Holds the watched camera while monitoring runs.
+     */
+    public MotionMonitor(MainActivity mainActivity, Handler mainHandler, CaptureStore store, CameraReservations reservations) {
+        this.mainActivity = mainActivity;
+        this.mainHandler = mainHandler;
+        this.store = store;
+        this.reservations = reservations;
+    }
+
+    /**
+     * Starts watching a camera, replacing any previous monitoring.
+     *
+     * @param camera The camera to watch and capture with.
+     * @param triggerPercent Share of changed cells (0-100) inside the region of interest that triggers a capture.
+     * @param roi Region of interest as {left, top, right, bottom} fractions of the frame, or null for the whole frame.
+     * @param onStarted Called on the main thread with the job ID the captures are stored under, once the camera is bound.
+     * @param onError Called on the main thread with the reason if the camera is reserved by a job it cannot stream
+     *                together with, or could not be bound. Exactly one of the two callbacks runs.
+     */
+    public void start(CameraCatalog.CameraDescriptor camera, float triggerPercent, float[] roi, IntConsumer onStarted,
+                      Consumer<String> onError) {
+        stop();
+        String refused = reservations.reserve(CameraCatalog.get(mainActivity), camera.id);
+        if (refused != null) {
+            onError.accept(refused);
+            return;
+        }
+        int newJobId = store.newJobId();
+        analysisExecutor.execute(() -> {
+            detector.reset();
+            detector.setTriggerFraction(triggerPercent / 100f);
+            if (roi != null) {
+                detector.setRegionOfInterest(roi[0], roi[1], roi[2], roi[3]);
+            } else {
+                detector.setRegionOfInterest(0f, 0f, 1f, 1f);
+            }
+        });
+        frames.set(0);
+        triggers.set(0);
+        captured.set(0);
+        this.camera = camera;
+        this.jobId = newJobId;
+        CameraUtils.getSessionManager(mainActivity).startAnalysis(camera, this, analysisExecutor, () -> {
+            EventLog.record(EventLog.Event.MOTION_STARTED, newJobId, camera.id);
+            onStarted.accept(newJobId);
+        }, e -> {
+            EventLog.record(EventLog.Event.MOTION_START_FAILED, newJobId, e.getMessage());
+            stop();
+            onError.accept("Could not start motion detection: " + e.getMessage());
+        });
+    }
+
+    /**
+     * Stops monitoring and finishes its job.
+     *
+     * @return A summary of the stopped job, or null if nothing was running.
+     */
+    public String stop() {
+        int stoppedJobId = jobId;
+        if (stoppedJobId == -1) {
+            return null;
+        }
+        jobId = -1;
+        CameraSessionManager sessionManager = CameraUtils.getSessionManagerIfCreated();
+        if (sessionManager != null) {
+            // A released manager already unbound everything; creating a new one would bind to a destroyed activity.
+            sessionManager.stopAnalysis();
+        }
+        reservations.release(camera.id);
+        store.finishJob(stoppedJobId);
+        return "job=" + stoppedJobId + " frames=" + frames.get() + " triggers=" + triggers.get() + " captured=" + captured.get();
+    }
+
+    /**
+     * Runs on the analysis thread for every frame.
+     */
+    @Override
+    public void analyze(@NonNull ImageProxy image) {
+        try {
+            if (jobId == -1) {
+                return;
+            }
+            frames.incrementAndGet();
+            ImageProxy.PlaneProxy luma = image.getPlanes()[0];
+            if (detector.process(luma.getBuffer(), image.getWidth(), image.getHeight(),
+                    luma.getRowStride(), luma.getPixelStride())) {
+                onMotion();
+            }
+        } finally {
+            image.close();
+        }
+    }
+
+    /**
+     * Takes a photo unless one is already being taken or the cooldown has not elapsed.
+     */
+    private void onMotion() {
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastTriggerMs < Constants.MOTION_COOLDOWN_MS || !captureInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        lastTriggerMs = now;
+        int triggerJobId = jobId;
+        int sequence = triggers.incrementAndGet();
+        EventLog.record(EventLog.Event.MOTION_DETECTED, triggerJobId, (long) (detector.getLastScore() * 1000), null);
+        File outputFile = new File(mainActivity.getExternalFilesDir("photos"), "motion_" + triggerJobId + "_" + sequence + ".jpg");
+        ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(outputFile).build();
+        mainHandler.post(() -> CameraUtils.getSessionManager(mainActivity).takePicture(camera, outputOptions,
+                new ImageCapture.OnImageSavedCallback() {
+                    @Override
+                    public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
+                        captured.incrementAndGet();
+                        store.add(triggerJobId, outputFile);
+                        captureInFlight.set(false);
+                    }
+
+                    @Override
+                    public void onError(@NonNull ImageCaptureException exception) {
+                        EventLog.record(EventLog.Event.MOTION_CAPTURE_FAILED, triggerJobId, exception.getImageCaptureError(),
+                                exception.getMessage());
+                        captureInFlight.set(false);
+                    }
+                }));
+    }
+
+    /**
+     * Stops monitoring and the analysis thread. Must be called on the main thread, before the session manager is released.
+     */
+    public void shutdown() {
+        stop();
+        analysisExecutor.shutdown();
+    }
+}
@@ -4,18 +4,24 @@ import java.io.File;
 
 /**
  * Represents a response to be sent to the client, either a text message, an image, or an error.
+ * FRAME is an image from the capture store, sent with its capture ID; streams and batches of
+ * frames are terminated by a TEXT response. UNCHANGED replaces a FRAME whose image matches the
+ * previous frame sent to the same client, and only carries that previous capture ID.
  */
 public class Response {
 
     public enum ResponseType {
         TEXT,
         IMAGE,
-        ERROR
+        ERROR,
+        FRAME,
+        UNCHANGED
     }
 
     private final ResponseType type;
     private final String payload;   // For text or error messages
-    private final File imageFile;    // For image responses
+    private final File imageFile;    // For image and frame responses
+    private final long captureId;    // For frame and unchanged responses
 
     /**
      * Constructor for a text or error response.
@@ -27,6 +33,7 @@ public class Response {
         this.type = type;
         this.payload = payload;
         this.imageFile = null;
+        this.captureId = -1;
     }
 
     /**
@@ -39,6 +46,36 @@ public class Response {
         this.type = type;
         this.payload = null;
         this.imageFile = imageFile;
+        this.captureId = -1;
+    }
+
+    /**
+     * Constructor for a frame response (an image from the capture store).
+     *
+     * @param captureId The ID the capture store assigned to the image.
+     * @param imageFile The file containing the image to send.
+     */
+    public Response(long captureId, File imageFile) {
+        this.type = ResponseType.FRAME;
+        this.payload = null;
+        this.imageFile = imageFile;
+        this.captureId = captureId;
+    }
+
+    /**
+     * Creates an unchanged response.
+     *
+     * @param previousCaptureId The ID of the last frame sent to the client, which the new capture matches.
+     */
+    public static Response unchanged(long previousCaptureId) {
+        return new Response(ResponseType.UNCHANGED, previousCaptureId);
+    }
+
+    private Response(ResponseType type, long captureId) {
+        this.type = type;
+        this.payload = null;
+        this.imageFile = null;
+        this.captureId = captureId;
     }
 
     /**
@@ -56,12 +93,19 @@ public class Response {
     }
 
     /**
-     * Returns the image file (only for IMAGE type).
+     * Returns the image file (only for IMAGE and FRAME types).
      */
     public File getImageFile() {
         return imageFile;
     }
 
+    /**
+     * Returns the capture ID (for FRAME and UNCHANGED types, -1 otherwise).
+     */
+    public long getCaptureId() {
+        return captureId;
+    }
+
     /**
      * Serializes the response into a string format that can be transmitted over the network.
      * For TEXT and ERROR, includes the payload. For IMAGE, only includes a placeholder.
@@ -71,6 +115,8 @@ public class Response {
             return type.name() + "|" + (payload != null ? payload : "");
         } else if (type == ResponseType.IMAGE) {
             return type.name() + "|IMAGE_FILE";
+        } else if (type == ResponseType.FRAME || type == ResponseType.UNCHANGED) {
+            return type.name() + "|" + captureId;
         } else {
             return "UNKNOWN";
         }
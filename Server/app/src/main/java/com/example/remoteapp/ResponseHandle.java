@@ -0,0 +1,36 @@
+package com.example.remoteapp;
+
+/**
+ * The right to answer one command of a client. Command handlers answer through it instead of
+ * through the connection, so an answer that arrives late (after the response timeout, a permission
+ * dialog or an asynchronous camera failure) can only claim the response of its own command, never
+ * the one of a command read after it on a keep-alive connection.
+ */
+public final class ResponseHandle {
+
+    private final ClientConnection connection;
+    private final int command;
+
+    /**
+     * @param connection The client that sent the command.
+     * @param command The number of the command on its connection, starting at 1.
+     */
+    ResponseHandle(ClientConnection connection, int command) {
+        this.connection = connection;
+        this.command = command;
+    }
+
+    public ClientConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Claims the single response slot of this command.
+     *
+     * @return true if the caller may send the response, false if the command was already answered
+     * (e.g. by the response timeout) or the connection is closed.
+     */
+    boolean claim() {
+        return connection.claimResponse(command);
+    }
+}
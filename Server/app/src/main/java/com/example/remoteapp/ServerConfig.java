@@ -0,0 +1,50 @@
+package com.example.remoteapp;
+
+/**
+ * Holds the connection limits the SocketServer enforces on every client.
+ * All timeouts are in milliseconds.
+ */
+public class ServerConfig {
+
+    public final int port;
+    public final int connectTimeoutMs;
+    public final int readTimeoutMs;
+    public final int writeTimeoutMs;
+    public final int responseTimeoutMs;
+    public final int keepAliveTimeoutMs;
+    public final int maxCommandLength;
+    public final int maxConcurrentConnections;
+
+    /**
+     * Creates a configuration with explicit limits.
+     *
+     * @param port The TCP port to listen on.
+     * @param connectTimeoutMs Deadline for the full command line to arrive after accept.
+     * @param readTimeoutMs Maximum silence allowed between two reads.
+     * @param writeTimeoutMs Maximum time allowed to write a single response.
+     * @param responseTimeoutMs Maximum time a client may wait for the server to produce a response.
+     * @param keepAliveTimeoutMs Maximum silence before the next command on a KEEPALIVE connection.
+     * @param maxCommandLength Maximum length of a command line in bytes.
+     * @param maxConcurrentConnections Connections above this number are rejected right after accept.
+     */
+    public ServerConfig(int port, int connectTimeoutMs, int readTimeoutMs, int writeTimeoutMs,
+                        int responseTimeoutMs, int keepAliveTimeoutMs, int maxCommandLength, int maxConcurrentConnections) {
+        this.port = port;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.writeTimeoutMs = writeTimeoutMs;
+        this.responseTimeoutMs = responseTimeoutMs;
+        this.keepAliveTimeoutMs = keepAliveTimeoutMs;
+        this.maxCommandLength = maxCommandLength;
+        this.maxConcurrentConnections = maxConcurrentConnections;
+    }
+
+    /**
+     * Returns the configuration built from the values in {@link Constants}.
+     */
+    public static ServerConfig defaults() {
+        return new ServerConfig(Constants.SERVER_PORT, Constants.CONNECT_TIMEOUT_MS, Constants.READ_TIMEOUT_MS,
+                Constants.WRITE_TIMEOUT_MS, Constants.RESPONSE_TIMEOUT_MS, Constants.KEEPALIVE_TIMEOUT_MS, Constants.MAX_COMMAND_LENGTH,
+                Constants.MAX_CONCURRENT_CONNECTIONS);
+    }
+}
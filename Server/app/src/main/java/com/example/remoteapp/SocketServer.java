@@ -2,47 +2,78 @@ package com.example.remoteapp;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.TextView;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A simple TCP server that listens for incoming client connections,
  * handles commands using a CommandHandlerRegistry, and sends responses back to clients.
+ * Each client is read on its own worker under the limits of {@link ServerConfig},
+ * so a slow or malicious client cannot block the accept loop.
  */
 public class SocketServer {
 
     private final TextView messageTextView;
     private final MainActivity mainActivity;
+    private final ServerConfig config;
+    private final ConnectionStats stats = new ConnectionStats();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final Set<ClientConnection> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopped;
     private CommandHandlerRegistry commandHandlerRegistry;
 
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean uiUpdatePosted = new AtomicBoolean();
+    private volatile long lastUiUpdateMs;
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final ExecutorService connectionExecutor;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+    private static final ExecutorService responseExecutor = Executors.newCachedThreadPool();
     private ServerSocket serverSocket;
-    private static Socket clientSocket;
-    private static PrintWriter latestWriter;
 
     /**
-     * Constructs the SocketServer.
+     * Constructs the SocketServer with the default limits from {@link Constants}.
      *
      * @param mainActivity The main activity instance.
      * @param messageTextView The TextView to display server status messages.
      */
     public SocketServer(MainActivity mainActivity, TextView messageTextView) {
+        this(mainActivity, messageTextView, ServerConfig.defaults());
+    }
+
+    /**
+     * Constructs the SocketServer.
+     *
+     * @param mainActivity The main activity instance.
+     * @param messageTextView The TextView to display server status messages.
+     * @param config The port and connection limits to use.
+     */
+    public SocketServer(MainActivity mainActivity, TextView messageTextView, ServerConfig config) {
         this.mainActivity = mainActivity;
         this.messageTextView = messageTextView;
-
+        this.config = config;
+        this.connectionExecutor = Executors.newFixedThreadPool(config.maxConcurrentConnections);
     }
 
     /**
@@ -57,69 +88,260 @@ public class SocketServer {
      */
     private void startServer() {
         try {
-            updateUI("Server started on port " );
-            serverSocket = new ServerSocket(Constants.SERVER_PORT);
-            updateUI("Server started on port " + Constants.SERVER_PORT);
+            serverSocket = new ServerSocket(config.port);
+            EventLog.record(EventLog.Event.SERVER_STARTED, config.port, null);
+            updateUI();
             commandHandlerRegistry = new CommandHandlerRegistry(mainActivity, mainHandler, this);
 
-            while (true) {
+            while (!serverSocket.isClosed()) {
                 acceptClient();
             }
         } catch (IOException e) {
-            updateUI("Server error: " + e.getMessage());
+            EventLog.record(EventLog.Event.SERVER_ERROR, 0, e.getMessage());
+            updateUI();
             Log.e("SocketServer", "Server error: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Accepts a new client connection and processes the incoming command.
+     * Accepts a new client connection and hands it to a worker.
+     * Connections above the configured maximum are rejected immediately.
      */
     private void acceptClient() {
+        Socket socket;
+        try {
+            socket = serverSocket.accept();
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                EventLog.record(EventLog.Event.ACCEPT_FAILED, 0, e.getMessage());
+                updateUI();
+            }
+            return;
+        }
+        if (activeConnections.incrementAndGet() > config.maxConcurrentConnections) {
+            activeConnections.decrementAndGet();
+            stats.recordRejectedBusy();
+            EventLog.record(EventLog.Event.CLIENT_REJECTED_BUSY, socket.getPort(), socket.getInetAddress());
+            rejectClient(socket);
+            return;
+        }
+        stats.recordAccepted();
+        try {
+            ClientConnection client = new ClientConnection(socket, config, stats, watchdog,
+                    this::onClientClosed, this::readNextCommand);
+            connections.add(client);
+            if (stopped) {
+                client.close();
+                return;
+            }
+            EventLog.record(EventLog.Event.CLIENT_CONNECTED, socket.getPort(), activeConnections.get(), socket.getInetAddress());
+            updateUI();
+            connectionExecutor.execute(() -> serveClient(client));
+        } catch (IOException e) {
+            activeConnections.decrementAndGet();
+            closeQuietly(socket);
+            EventLog.record(EventLog.Event.CLIENT_FAILED, socket.getPort(), e.getMessage());
+            updateUI();
+        }
+    }
+
+    private void onClientClosed(ClientConnection client) {
+        connections.remove(client);
+        activeConnections.decrementAndGet();
+    }
+
+    /**
+     * Reads the command of an accepted client and dispatches it.
+     *
+     * @param client The accepted client.
+     */
+    private void serveClient(ClientConnection client) {
         try {
-            clientSocket = serverSocket.accept();
-            logAndUpdateUI("Client connected: " + clientSocket.getInetAddress());
-            latestWriter = new PrintWriter(clientSocket.getOutputStream(), true);
-
-            BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            String message = in.readLine();
-            if (message != null) {
-                commandHandlerRegistry.handleCommand(message);
+            String message = client.readCommand();
+            if (message == null || stopped) {
+                // After stop() the registry's executors are gone, so a command read in the meantime is not run.
+                client.close();
+                return;
             }
-            updateUI("Message received: " + message);
+            ResponseHandle handle = client.awaitResponse();
+            commandHandlerRegistry.handleCommand(handle, message);
+            updateUI();
+        } catch (BoundedLineReader.LineTooLongException e) {
+            EventLog.record(EventLog.Event.COMMAND_TOO_LONG, client.getPort(), client.getInetAddress());
+            answerToClient(client.responseHandle(), new Response(Response.ResponseType.ERROR, e.getMessage()));
+        } catch (SocketTimeoutException e) {
+            EventLog.record(EventLog.Event.CLIENT_IDLE, client.getPort(), client.getInetAddress());
+            client.close();
         } catch (IOException e) {
-            logAndUpdateUI("Error handling client: " + e.getMessage());
+            EventLog.record(EventLog.Event.CLIENT_FAILED, client.getPort(), e.getMessage());
+            updateUI();
+            client.close();
         }
     }
 
+    /**
+     * Reads the next command of a keep-alive connection on a connection worker.
+     *
+     * @param client The connection whose previous response was just written.
+     */
+    private void readNextCommand(ClientConnection client) {
+        try {
+            connectionExecutor.execute(() -> serveClient(client));
+        } catch (RejectedExecutionException e) {
+            client.close();
+        }
+    }
 
     /**
-     * Sends a Response object to the currently connected client asynchronously.
+     * Tells a client that the server is at capacity and closes the socket, without waiting for its command.
+     * The output is shut down before closing so the reply is followed by a FIN, and whatever the client already
+     * sent is discarded: closing a socket with unread input sends a RST, which can destroy the reply on its way.
      *
+     * @param socket The socket to reject.
+     */
+    private void rejectClient(Socket socket) {
+        try {
+            OutputStream out = socket.getOutputStream();
+            PrintWriter writer = new PrintWriter(out, true);
+            writer.println(Response.ResponseType.ERROR.name());
+            sendTextResponse(new Response(Response.ResponseType.ERROR, "Server busy"), out, writer);
+            socket.shutdownOutput();
+            InputStream in = socket.getInputStream();
+            in.skip(in.available());
+        } catch (IOException e) {
+            EventLog.record(EventLog.Event.CLIENT_FAILED, socket.getPort(), e.getMessage());
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Sends a Response object to the given client asynchronously and closes the connection afterwards
+     * (or reads the next command, on a keep-alive connection).
+     * Only the first response to a command is sent; later ones are dropped.
+     *
+     * @param client The command to answer.
      * @param response The response to send (TEXT, ERROR, or IMAGE).
      */
-    public static void answerToClient(Response response) {
-        new Thread(() -> {
-            if (latestWriter != null) {
-                try {
-                    OutputStream out = clientSocket.getOutputStream();
-                    PrintWriter writer = new PrintWriter(out, true);
+    public static void answerToClient(ResponseHandle client, Response response) {
+        answerToClient(client, response, null);
+    }
 
-                    writer.println(response.getType().name());
-                    writer.flush();
+    /**
+     * Sends a Response object to the given client asynchronously, then runs a follow-up action.
+     * The action runs once the write finished, whether it succeeded or not, or right away if the response was dropped.
+     *
+     * @param client The command to answer.
+     * @param response The response to send (TEXT, ERROR, or IMAGE).
+     * @param afterSent Action to run after the response was written, or null.
+     */
+    public static void answerToClient(ResponseHandle client, Response response, Runnable afterSent) {
+        if (client == null || !client.claim()) {
+            EventLog.record(EventLog.Event.RESPONSE_DROPPED, response.getType().ordinal(), null);
+            if (afterSent != null) {
+                afterSent.run();
+            }
+            return;
+        }
+        sendClaimedResponse(client.getConnection(), response, afterSent);
+    }
+
+    /**
+     * Sends a response whose slot the caller already claimed with {@link ResponseHandle#claim()}.
+     *
+     * @see #answerToClient(ResponseHandle, Response, Runnable)
+     */
+    static void sendClaimedResponse(ClientConnection client, Response response, Runnable afterSent) {
+        responseExecutor.execute(() -> {
+            try {
+                writeResponse(client, response);
+            } catch (IOException e) {
+                EventLog.record(EventLog.Event.RESPONSE_FAILED, response.getType().ordinal(), e.getMessage());
+                client.close();
+            } finally {
+                client.finishResponse();
+                if (afterSent != null) {
+                    afterSent.run();
+                }
+            }
+        });
+    }
+
+    /** A sequence of responses written to one client, e.g. a stream of frames. */
+    public interface StreamTask {
+        /**
+         * Writes any number of responses with {@link SocketServer#writeResponse}, the last one TEXT or ERROR.
+         * The connection is closed afterwards, or reads the next command on a keep-alive connection.
+         */
+        void run(ClientConnection client) throws IOException, InterruptedException;
+    }
 
-                    if (response.getType() == Response.ResponseType.TEXT || response.getType() == Response.ResponseType.ERROR) {
-                        sendTextResponse(response,out,writer);
-                    } else if (response.getType() == Response.ResponseType.IMAGE) {
-                        sendImageFile(response.getImageFile(), out, writer);
-                    }
+    /**
+     * Claims the client for a multi-response exchange and runs the task on a response thread.
+     * The response deadline no longer applies, but every single write is still bounded by the write deadline.
+     *
+     * @param handle The command to answer.
+     * @param task Writes the responses.
+     */
+    public static void streamToClient(ResponseHandle handle, StreamTask task) {
+        if (handle == null || !handle.claim()) {
+            EventLog.record(EventLog.Event.STREAM_DROPPED);
+            return;
+        }
+        ClientConnection client = handle.getConnection();
+        responseExecutor.execute(() -> {
+            try {
+                task.run(client);
+            } catch (IOException e) {
+                EventLog.record(EventLog.Event.STREAM_ENDED, client.getPort(), e.getMessage());
+                client.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                client.close();
+            } finally {
+                client.finishResponse();
+            }
+        });
+    }
+
+    /**
+     * Writes one response to the client under the write deadline, without closing the connection.
+     *
+     * @param client The client to write to.
+     * @param response The response to send.
+     * @throws IOException If the write fails or the deadline closed the socket.
+     */
+    public static void writeResponse(ClientConnection client, Response response) throws IOException {
+        ScheduledFuture<?> writeDeadline = client.startWriteDeadline();
+        try {
+            OutputStream out = client.getOutputStream();
+            PrintWriter writer = new PrintWriter(out, true);
 
-                } catch (IOException e) {
-                    Log.e("SocketServer", "Error sending response: " + e.getMessage(), e);
-                } finally {
-                    closeLatestClient();
+            writer.println(response.getType().name());
+            writer.flush();
+
+            long bytes = 0;
+            if (response.getType() == Response.ResponseType.TEXT || response.getType() == Response.ResponseType.ERROR) {
+                bytes = sendTextResponse(response, out, writer);
+            } else if (response.getType() == Response.ResponseType.IMAGE) {
+                bytes = sendImageFile(response.getImageFile(), out, writer);
+            } else if (response.getType() == Response.ResponseType.FRAME) {
+                writer.println(response.getCaptureId());
+                if (response.getImageFile() == null || !response.getImageFile().exists()) {
+                    // Keep the stream framed even if the store already evicted the file.
+                    writer.println(0);
+                    writer.flush();
+                } else {
+                    bytes = sendImageFile(response.getImageFile(), out, writer);
                 }
+            } else if (response.getType() == Response.ResponseType.UNCHANGED) {
+                writer.println(response.getCaptureId());
+                writer.flush();
             }
-        }).start();
+            EventLog.record(EventLog.Event.RESPONSE_SENT, response.getType().ordinal(), bytes, null);
+        } finally {
+            writeDeadline.cancel(false);
+        }
     }
 
     /**
@@ -128,15 +350,17 @@ public class SocketServer {
      * @param response The text or error response to send.
      * @param out The output stream to the client.
      * @param writer The PrintWriter for simple text sending.
+     * @return The number of payload bytes sent.
      * @throws IOException If sending fails.
      */
-    private static void sendTextResponse(Response response, OutputStream out, PrintWriter writer) throws IOException {
+    private static long sendTextResponse(Response response, OutputStream out, PrintWriter writer) throws IOException {
         String payload = response.getPayload();
-        byte[] payloadBytes = payload.getBytes("UTF-8");
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
         writer.println(payloadBytes.length);
         writer.flush();
         out.write(payloadBytes);
         out.flush();
+        return payloadBytes.length;
     }
 
     /**
@@ -145,11 +369,13 @@ public class SocketServer {
      * @param imageFile The image file to send.
      * @param out The output stream to the client.
      * @param writer The PrintWriter for sending initial file size.
+     * @return The number of image bytes sent, 0 if the file does not exist.
      * @throws IOException If file reading or writing fails.
      */
-    private static void sendImageFile(File imageFile, OutputStream out, PrintWriter writer) throws IOException {
+    private static long sendImageFile(File imageFile, OutputStream out, PrintWriter writer) throws IOException {
         if (imageFile != null && imageFile.exists()) {
-            writer.println(imageFile.length());
+            long length = imageFile.length();
+            writer.println(length);
             writer.flush();
 
             try (FileInputStream fis = new FileInputStream(imageFile)) {
@@ -160,40 +386,69 @@ public class SocketServer {
                 }
                 out.flush();
             }
-            Log.d("PhotoStatus", " Image sent successfully.");
-        } else {
-            Log.e("PhotoStatus", " Image file does not exist.");
+            return length;
         }
+        EventLog.record(EventLog.Event.IMAGE_MISSING, 0, imageFile);
+        // An empty image keeps the stream framed for keep-alive clients.
+        writer.println(0);
+        writer.flush();
+        return 0;
     }
 
+    /**
+     * Returns the connection counters, including how many clients were killed for each reason.
+     */
+    public ConnectionStats getStats() {
+        return stats;
+    }
 
     /**
-     * Closes the currently connected client socket cleanly.
+     * Returns the number of client connections currently open.
      */
-    public static void closeLatestClient() {
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    private static void closeQuietly(Socket socket) {
         try {
-            if (clientSocket != null && !clientSocket.isClosed()) {
-                clientSocket.close();
-                Log.d("CameraX","latestWriter=null");
-                latestWriter=null;
-            }
+            socket.close();
         } catch (IOException e) {
             Log.e("SocketServer", "Error closing client socket: " + e.getMessage(), e);
         }
     }
+
     /**
-     * Updates the UI text safely from the main thread.
-     *
-     * @param message The message to display in the TextView.
+     * Shows the latest event of the {@link EventLog} in the TextView, from the main thread.
+     * Updates are coalesced: at most one is queued on the main thread at a time, it runs at most once
+     * per {@link Constants#UI_UPDATE_INTERVAL_MS} and formats only the event current at that time, so a burst of
+     * connections costs the main looper a single message instead of one per event.
      */
-    private void updateUI(String message) {
-        mainHandler.post(() -> messageTextView.setText(message));
+    private void updateUI() {
+        if (uiUpdatePosted.compareAndSet(false, true)) {
+            long wait = lastUiUpdateMs + Constants.UI_UPDATE_INTERVAL_MS - SystemClock.uptimeMillis();
+            mainHandler.postDelayed(this::applyUIUpdate, Math.max(0, wait));
+        }
+    }
+
+    private void applyUIUpdate() {
+        // Cleared before reading, so an event recorded after this point posts a new update.
+        uiUpdatePosted.set(false);
+        lastUiUpdateMs = SystemClock.uptimeMillis();
+        messageTextView.setText(EventLog.latest());
     }
     /**
-     * Stops the server and shuts down the executor service cleanly.
+     * Stops the server and shuts down the executor services cleanly. Must be called on the main thread.
+     * Accepted and kept-alive connections are closed too: their deadlines stop with the watchdog,
+     * and a command they sent could no longer be run.
      */
     public void stop() {
+        stopped = true;
+        if (commandHandlerRegistry != null) {
+            commandHandlerRegistry.shutdown();
+        }
         executorService.shutdownNow();
+        connectionExecutor.shutdownNow();
+        watchdog.shutdownNow();
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
@@ -201,15 +456,9 @@ public class SocketServer {
         } catch (IOException e) {
             Log.e("SocketServer", "Error closing server socket: " + e.getMessage(), e);
         }
-    }
-    /**
-     * Logs a message and updates the UI with it.
-     *
-     * @param message The message to log and display.
-     */
-    private void logAndUpdateUI(String message) {
-        Log.d("SocketServer", message);
-        updateUI(message);
+        for (ClientConnection client : connections) {
+            client.close();
+        }
     }
 
 
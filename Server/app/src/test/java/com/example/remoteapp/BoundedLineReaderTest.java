@@ -0,0 +1,145 @@
+package com.example.remoteapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads lines from a loopback socket whose other end is driven by the test, like a (slow) client would.
+ */
+public class BoundedLineReaderTest {
+
+    private ServerSocket serverSocket;
+    private Socket client;
+    private Socket accepted;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        client = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        accepted = serverSocket.accept();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        accepted.close();
+        serverSocket.close();
+    }
+
+    @Test(timeout = 5000)
+    public void readsLinesAndStripsTerminators() throws IOException {
+        send("STATS\r\nTAKE_PHOTO front\nGET_PROP");
+        client.shutdownOutput();
+        BoundedLineReader reader = new BoundedLineReader(accepted, 64);
+        assertEquals("STATS", reader.readLine(1000, 2000));
+        assertEquals("TAKE_PHOTO front", reader.readLine(1000, 2000));
+        assertEquals("an unterminated last line is still returned", "GET_PROP", reader.readLine(1000, 2000));
+        assertNull(reader.readLine(1000, 2000));
+    }
+
+    @Test(timeout = 5000)
+    public void lineAtMaximumLength_isAccepted() throws IOException {
+        send("12345678\n");
+        assertEquals("12345678", new BoundedLineReader(accepted, 8).readLine(1000, 2000));
+    }
+
+    @Test(timeout = 5000)
+    public void lineAboveMaximumLength_throwsLineTooLong() throws IOException {
+        send("123456789\n");
+        try {
+            new BoundedLineReader(accepted, 8).readLine(1000, 2000);
+            fail("expected LineTooLongException");
+        } catch (BoundedLineReader.LineTooLongException e) {
+            assertEquals("Command exceeds 8 bytes", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void silentClient_timesOutAfterReadTimeout() throws IOException {
+        send("STA");
+        BoundedLineReader reader = new BoundedLineReader(accepted, 64);
+        long start = System.nanoTime();
+        try {
+            reader.readLine(300, 3000);
+            fail("expected SocketTimeoutException");
+        } catch (BoundedLineReader.DeadlineExceededException e) {
+            fail("silence must be reported as a read timeout, not as the deadline");
+        } catch (SocketTimeoutException e) {
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+            assertTrue("timed out after " + elapsedMs + " ms", elapsedMs >= 250 && elapsedMs < 2000);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void tricklingClient_hitsDeadlineDespiteSending() throws Exception {
+        // One byte every 100 ms never trips the 500 ms read timeout, only the 1000 ms deadline.
+        Thread trickle = new Thread(() -> {
+            try {
+                for (int i = 0; i < 30; i++) {
+                    send("x");
+                    Thread.sleep(100);
+                }
+            } catch (IOException | InterruptedException e) {
+                // The test is over or closed the socket.
+            }
+        });
+        trickle.start();
+        BoundedLineReader reader = new BoundedLineReader(accepted, 64);
+        long start = System.nanoTime();
+        try {
+            reader.readLine(500, 1000);
+            fail("expected DeadlineExceededException");
+        } catch (BoundedLineReader.DeadlineExceededException e) {
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+            assertTrue("deadline hit after " + elapsedMs + " ms", elapsedMs >= 950 && elapsedMs < 2000);
+            assertEquals("Command not received within 1000 ms", e.getMessage());
+        } finally {
+            trickle.interrupt();
+            trickle.join();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void deadlineShorterThanReadTimeout_isReportedAsDeadline() throws IOException {
+        BoundedLineReader reader = new BoundedLineReader(accepted, 64);
+        try {
+            reader.readLine(3000, 300);
+            fail("expected DeadlineExceededException");
+        } catch (BoundedLineReader.DeadlineExceededException e) {
+            assertEquals("Command not received within 300 ms", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void isClosedByPeer_openConnection_isFalse() throws IOException {
+        assertFalse(new BoundedLineReader(accepted, 64).isClosedByPeer());
+    }
+
+    @Test(timeout = 5000)
+    public void isClosedByPeer_keepsPipelinedCommandReadable() throws Exception {
+        BoundedLineReader reader = new BoundedLineReader(accepted, 64);
+        send("STATS\n");
+        client.close();
+        Thread.sleep(100);
+        assertFalse("a command is still unread", reader.isClosedByPeer());
+        assertEquals("STATS", reader.readLine(1000, 2000));
+        assertTrue(reader.isClosedByPeer());
+    }
+
+    private void send(String text) throws IOException {
+        OutputStream out = client.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
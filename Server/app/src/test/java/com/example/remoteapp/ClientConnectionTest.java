@@ -0,0 +1,126 @@
+package com.example.remoteapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ClientConnection.readCommand applies the first-command and keep-alive limits
+ * and counts each way a client gets killed in the ConnectionStats.
+ */
+public class ClientConnectionTest {
+
+    // connect 600 ms, read 300 ms, keep-alive 400 ms, 16-byte commands
+    private final ServerConfig config = new ServerConfig(0, 600, 300, 1000, 1000, 400, 16, 4);
+    private final ConnectionStats stats = new ConnectionStats();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+    private ServerSocket serverSocket;
+    private Socket client;
+    private ClientConnection connection;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        client = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        connection = new ClientConnection(serverSocket.accept(), config, stats, watchdog, c -> { }, c -> { });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        connection.close();
+        client.close();
+        serverSocket.close();
+        watchdog.shutdownNow();
+    }
+
+    @Test(timeout = 5000)
+    public void silentFirstCommand_countsReadTimeout() throws IOException {
+        try {
+            connection.readCommand();
+            fail("expected SocketTimeoutException");
+        } catch (BoundedLineReader.DeadlineExceededException e) {
+            fail("300 ms of silence must end the read before the 600 ms deadline");
+        } catch (SocketTimeoutException e) {
+            assertEquals(1, stats.getReadTimeouts());
+            assertEquals(0, stats.getConnectTimeouts());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void tricklingFirstCommand_countsConnectTimeout() throws Exception {
+        Thread trickle = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20; i++) {
+                    send("x");
+                    Thread.sleep(100);
+                }
+            } catch (IOException | InterruptedException e) {
+                // The test is over or closed the socket.
+            }
+        });
+        trickle.start();
+        try {
+            connection.readCommand();
+            fail("expected DeadlineExceededException");
+        } catch (BoundedLineReader.DeadlineExceededException e) {
+            assertEquals(1, stats.getConnectTimeouts());
+            assertEquals(0, stats.getReadTimeouts());
+        } finally {
+            trickle.interrupt();
+            trickle.join();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void oversizedCommand_countsOversized() throws IOException {
+        send("TAKE_PHOTO external gallery\n");
+        try {
+            connection.readCommand();
+            fail("expected LineTooLongException");
+        } catch (BoundedLineReader.LineTooLongException e) {
+            assertEquals(1, stats.getOversizedCommands());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void nextCommand_mayFollowAfterReadTimeoutOnKeepAlive() throws Exception {
+        send("KEEPALIVE\n");
+        assertEquals("KEEPALIVE", connection.readCommand());
+        // Longer than the read timeout, shorter than the keep-alive timeout.
+        Thread.sleep(350);
+        send("STATS\n");
+        assertEquals("STATS", connection.readCommand());
+        assertEquals(0, stats.getReadTimeouts());
+    }
+
+    @Test(timeout = 5000)
+    public void idleKeepAlive_countsKeepAliveIdle() throws IOException {
+        send("KEEPALIVE\n");
+        assertEquals("KEEPALIVE", connection.readCommand());
+        try {
+            connection.readCommand();
+            fail("expected SocketTimeoutException");
+        } catch (SocketTimeoutException e) {
+            assertEquals(1, stats.getKeepAliveIdleCloses());
+            assertEquals(0, stats.getReadTimeouts());
+        }
+    }
+
+    private void send(String text) throws IOException {
+        OutputStream out = client.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.remoteapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the motion detector on synthetic luma planes. With an 80x60 frame and an 8x6 grid,
+ * every cell covers a 10x10 pixel block, so the tests can change an exact number of cells.
+ */
+public class MotionDetectorTest {
+
+    private static final int WIDTH = 80;
+    private static final int HEIGHT = 60;
+    private static final int CELLS = 8 * 6;
+
+    private MotionDetector detector;
+
+    @Before
+    public void setUp() {
+        // 10% trigger: 5 of 48 cells (10.4%) trigger, 4 (8.3%) do not.
+        detector = new MotionDetector(8, 6, 25, 0.1f);
+    }
+
+    @Test
+    public void staticFrames_noMotion() {
+        byte[] pixels = gradient(WIDTH, HEIGHT);
+        assertFalse("the first frame has nothing to compare with", process(pixels, WIDTH, HEIGHT));
+        for (int i = 0; i < 5; i++) {
+            assertFalse(process(pixels, WIDTH, HEIGHT));
+            assertEquals(0f, detector.getLastScore(), 0f);
+        }
+    }
+
+    @Test
+    public void changedBlock_aboveTrigger_isMotion() {
+        byte[] before = gradient(WIDTH, HEIGHT);
+        process(before, WIDTH, HEIGHT);
+        assertTrue(process(changeCells(before, 0, 0, 5, 1, 100), WIDTH, HEIGHT));
+        assertEquals(5f / CELLS, detector.getLastScore(), 1e-6f);
+    }
+
+    @Test
+    public void changedBlock_belowTrigger_isNoMotion() {
+        byte[] before = gradient(WIDTH, HEIGHT);
+        process(before, WIDTH, HEIGHT);
+        assertFalse(process(changeCells(before, 0, 0, 4, 1, 100), WIDTH, HEIGHT));
+        assertEquals(4f / CELLS, detector.getLastScore(), 1e-6f);
+    }
+
+    @Test
+    public void changeBelowPixelThreshold_isIgnored() {
+        byte[] before = gradient(WIDTH, HEIGHT);
+        process(before, WIDTH, HEIGHT);
+        assertFalse(process(changeCells(before, 0, 0, 8, 6, 20), WIDTH, HEIGHT));
+        assertEquals(0f, detector.getLastScore(), 0f);
+    }
+
+    @Test
+    public void regionOfInterest_masksChangesOutside() {
+        detector.setRegionOfInterest(0f, 0f, 0.5f, 1f);  // left 4 columns: 24 cells
+        byte[] before = gradient(WIDTH, HEIGHT);
+        process(before, WIDTH, HEIGHT);
+
+        byte[] outside = changeCells(before, 4, 0, 4, 6, 100);
+        assertFalse(process(outside, WIDTH, HEIGHT));
+        assertEquals(0f, detector.getLastScore(), 0f);
+
+        byte[] inside = changeCells(outside, 0, 0, 3, 1, 100);
+        assertTrue(process(inside, WIDTH, HEIGHT));
+        assertEquals(3f / 24, detector.getLastScore(), 1e-6f);
+    }
+
+    @Test
+    public void frameSizeChange_restartsComparison() {
+        process(gradient(WIDTH, HEIGHT), WIDTH, HEIGHT);
+
+        // A different size is a new baseline, not motion.
+        byte[] large = gradient(160, 120);
+        assertFalse(process(large, 160, 120));
+        assertFalse(process(large, 160, 120));
+        assertEquals(0f, detector.getLastScore(), 0f);
+
+        // Cells are 20x20 pixels now.
+        byte[] moved = large.clone();
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 100; x++) {
+                moved[y * 160 + x] = (byte) ((moved[y * 160 + x] & 0xFF) ^ 0x80);
+            }
+        }
+        assertTrue(process(moved, 160, 120));
+        assertEquals(5f / CELLS, detector.getLastScore(), 1e-6f);
+    }
+
+    @Test
+    public void rowAndPixelStride_onlyPixelsAreRead() {
+        int rowStride = WIDTH * 2 + 16;
+        int pixelStride = 2;
+        byte[] pixels = gradient(WIDTH, HEIGHT);
+
+        // Same pixels, but the padding bytes between pixels and after each row change completely.
+        assertFalse(detector.process(strided(pixels, rowStride, pixelStride, (byte) 0), WIDTH, HEIGHT, rowStride, pixelStride));
+        assertFalse(detector.process(strided(pixels, rowStride, pixelStride, (byte) 255), WIDTH, HEIGHT, rowStride, pixelStride));
+        assertEquals(0f, detector.getLastScore(), 0f);
+
+        byte[] changed = changeCells(pixels, 2, 3, 5, 1, 100);
+        assertTrue(detector.process(strided(changed, rowStride, pixelStride, (byte) 0), WIDTH, HEIGHT, rowStride, pixelStride));
+        assertEquals(5f / CELLS, detector.getLastScore(), 1e-6f);
+    }
+
+    @Test
+    public void reset_forgetsPreviousFrame() {
+        byte[] before = gradient(WIDTH, HEIGHT);
+        process(before, WIDTH, HEIGHT);
+        detector.reset();
+        assertFalse(process(changeCells(before, 0, 0, 8, 6, 100), WIDTH, HEIGHT));
+    }
+
+    private boolean process(byte[] pixels, int width, int height) {
+        return detector.process(ByteBuffer.wrap(pixels), width, height, width, 1);
+    }
+
+    /**
+     * A tightly packed plane with a smooth horizontal gradient (40-198), so changed cells stay within 0-255.
+     */
+    private static byte[] gradient(int width, int height) {
+        byte[] pixels = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = (byte) (40 + x * 160 / width);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Returns a copy of an 80x60 plane with a rectangle of 10x10 cells brightened or darkened by delta.
+     */
+    private static byte[] changeCells(byte[] pixels, int cellX, int cellY, int cellsWide, int cellsHigh, int delta) {
+        byte[] changed = pixels.clone();
+        for (int y = cellY * 10; y < (cellY + cellsHigh) * 10; y++) {
+            for (int x = cellX * 10; x < (cellX + cellsWide) * 10; x++) {
+                int value = changed[y * WIDTH + x] & 0xFF;
+                changed[y * WIDTH + x] = (byte) (value + delta <= 255 ? value + delta : value - delta);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Lays out a packed 80x60 plane with the given strides, filling every other byte with padding.
+     */
+    private static ByteBuffer strided(byte[] pixels, int rowStride, int pixelStride, byte padding) {
+        byte[] plane = new byte[rowStride * HEIGHT];
+        Arrays.fill(plane, padding);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                plane[y * rowStride + x * pixelStride] = pixels[y * WIDTH + x];
+            }
+        }
+        return ByteBuffer.wrap(plane);
+    }
+}
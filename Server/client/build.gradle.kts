@@ -0,0 +1,18 @@
+plugins {
+    `java-library`
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+application {
+    // ./gradlew :client:run --args="--standin" (or --args="<host> <port> ...", see LoadGenerator)
+    mainClass.set("com.example.remoteclient.LoadGenerator")
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
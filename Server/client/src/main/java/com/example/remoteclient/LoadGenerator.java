@@ -0,0 +1,177 @@
+package com.example.remoteclient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the same command many times through a RemoteCameraClient and reports latency percentiles and throughput.
+ *
+ * Usage:
+ *   LoadGenerator (host port | --standin [image_bytes]) [--command CMD] [--requests N] [--warmup N]
+ *                 [--pool N] [--depth N] [--out DIR]
+ *
+ * --standin runs the test against an in-process StandInServer instead of a device.
+ * --out writes the received images into DIR; by default they are read and discarded.
+ * Latency is measured from send() to the reply, so it includes the time spent queued behind
+ * pipelined commands.
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        String host = null;
+        int port = RemoteCameraClient.DEFAULT_PORT;
+        int standInImageBytes = -1;
+        String command = "GET_PROP";
+        int requests = 2000;
+        int warmup = 200;
+        int pool = RemoteCameraClient.DEFAULT_POOL_SIZE;
+        int depth = RemoteCameraClient.DEFAULT_PIPELINE_DEPTH;
+        Path out = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--standin":
+                    standInImageBytes = i + 1 < args.length && !args[i + 1].startsWith("--")
+                            ? Integer.parseInt(args[++i]) : 2 * 1024 * 1024;
+                    break;
+                case "--command":
+                    command = args[++i];
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--pool":
+                    pool = Integer.parseInt(args[++i]);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--out":
+                    out = Files.createDirectories(Paths.get(args[++i]));
+                    break;
+                default:
+                    if (host == null) {
+                        host = args[i];
+                    } else {
+                        port = Integer.parseInt(args[i]);
+                    }
+            }
+        }
+
+        StandInServer standIn = null;
+        if (standInImageBytes >= 0) {
+            standIn = new StandInServer(standInImageBytes);
+            host = "127.0.0.1";
+            port = standIn.getPort();
+        } else if (host == null) {
+            System.err.println("Usage: LoadGenerator (host port | --standin [image_bytes]) [--command CMD] [--requests N]"
+                    + " [--warmup N] [--pool N] [--depth N] [--out DIR]");
+            System.exit(2);
+        }
+
+        try (RemoteCameraClient client = new RemoteCameraClient(host, port, pool, depth, out)) {
+            client.connectAll();
+            if (warmup > 0) {
+                run(client, command, warmup);
+            }
+            Result result = run(client, command, requests);
+            System.out.println("target: " + host + ":" + port + (standIn != null ? " (stand-in)" : ""));
+            System.out.println("command: " + command + ", pool: " + pool + ", depth: " + depth);
+            System.out.print(result.format());
+        } finally {
+            if (standIn != null) {
+                standIn.close();
+            }
+        }
+    }
+
+    /** Latencies and byte count of one run. */
+    static class Result {
+        final long[] latenciesNanos;
+        final int errors;
+        final int failures;
+        final long bytes;
+        final long elapsedNanos;
+
+        Result(long[] latenciesNanos, int errors, int failures, long bytes, long elapsedNanos) {
+            this.latenciesNanos = latenciesNanos;
+            this.errors = errors;
+            this.failures = failures;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns the latency below which the given share (0-1) of the answered requests fall, in nanoseconds.
+         */
+        long percentile(double share) {
+            if (latenciesNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(share * latenciesNanos.length) - 1;
+            return latenciesNanos[Math.max(0, Math.min(index, latenciesNanos.length - 1))];
+        }
+
+        String format() {
+            double seconds = elapsedNanos / 1e9;
+            double megabytes = bytes / (1024.0 * 1024.0);
+            return String.format(Locale.US,
+                    "requests: %d (error replies %d, failed %d)%n"
+                            + "elapsed_s: %.3f%n"
+                            + "requests_per_s: %.1f%n"
+                            + "p50_ms: %.3f%n"
+                            + "p99_ms: %.3f%n"
+                            + "max_ms: %.3f%n"
+                            + "received_mb: %.2f%n"
+                            + "mb_per_s: %.2f%n",
+                    latenciesNanos.length + failures, errors, failures, seconds,
+                    latenciesNanos.length / seconds, percentile(0.50) / 1e6, percentile(0.99) / 1e6,
+                    percentile(1.0) / 1e6, megabytes, megabytes / seconds);
+        }
+    }
+
+    /**
+     * Sends the command count times as fast as the pipelines allow and waits for every reply.
+     */
+    static Result run(RemoteCameraClient client, String command, int count) throws IOException, InterruptedException {
+        long[] latencies = new long[count];
+        AtomicInteger answered = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(count);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long sent = System.nanoTime();
+            client.send(command).whenComplete((reply, error) -> {
+                if (error != null) {
+                    failures.incrementAndGet();
+                } else {
+                    latencies[answered.getAndIncrement()] = System.nanoTime() - sent;
+                    bytes.addAndGet(reply.getBytes());
+                    if (reply.isError()) {
+                        errors.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = Arrays.copyOf(latencies, answered.get());
+        Arrays.sort(sorted);
+        return new Result(sorted, errors.get(), failures.get(), bytes.get(), elapsed);
+    }
+}
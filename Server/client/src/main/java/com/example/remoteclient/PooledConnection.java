@@ -0,0 +1,181 @@
+package com.example.remoteclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One persistent (KEEPALIVE) connection to the server. Commands are written as soon as they are sent,
+ * up to the pipeline depth without waiting for earlier replies; a reader thread decodes the replies,
+ * which the server sends in command order, and completes the matching futures.
+ */
+class PooledConnection implements Closeable {
+
+    private final SocketChannel channel;
+    private final ResponseDecoder decoder;
+    private final Semaphore window;
+    private final Queue<CompletableFuture<Reply>> pending = new ArrayDeque<>();
+    private final ByteBuffer commandBuffer;
+    private volatile boolean open = true;
+
+    /**
+     * Connects and switches the connection to keep-alive mode.
+     *
+     * @param address The server.
+     * @param connectTimeoutMs Maximum time to connect and get the KEEPALIVE reply.
+     * @param pipelineDepth Maximum number of commands sent but not answered yet.
+     * @param imageDirectory Where images are written, or null to discard them.
+     * @param imageCounter Numbers the IMAGE files of all connections.
+     * @throws IOException If the server cannot be reached or refuses the connection (e.g. "Server busy").
+     */
+    PooledConnection(InetSocketAddress address, int connectTimeoutMs, int pipelineDepth, Path imageDirectory,
+                     AtomicLong imageCounter) throws IOException {
+        this.channel = SocketChannel.open();
+        this.window = new Semaphore(pipelineDepth);
+        this.commandBuffer = ByteBuffer.allocateDirect(RemoteCameraClient.MAX_COMMAND_LENGTH + 1);
+        try {
+            channel.socket().connect(address, connectTimeoutMs);
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.decoder = new ResponseDecoder(channel, imageDirectory, imageCounter, RemoteCameraClient.READ_BUFFER_SIZE);
+        Thread reader = new Thread(this::readReplies, "RemoteCamera-" + channel.socket().getLocalPort());
+        reader.setDaemon(true);
+        reader.start();
+
+        Reply reply;
+        try {
+            reply = send("KEEPALIVE").get(connectTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IOException("Interrupted while connecting", e);
+        } catch (ExecutionException | TimeoutException e) {
+            close();
+            throw new IOException("No KEEPALIVE reply: " + e.getMessage(), e);
+        }
+        if (reply.isError()) {
+            close();
+            throw new IOException("Server refused the connection: " + reply.getText());
+        }
+    }
+
+    /**
+     * Sends a command, blocking while the pipeline is full.
+     *
+     * @param command The command line, without line terminator.
+     * @return Completed with the reply, or exceptionally if the connection fails first.
+     */
+    CompletableFuture<Reply> send(String command) throws InterruptedException {
+        window.acquire();
+        CompletableFuture<Reply> future = new CompletableFuture<>();
+        future.whenComplete((reply, error) -> window.release());
+        synchronized (this) {
+            if (!open) {
+                future.completeExceptionally(new IOException("Connection closed"));
+                return future;
+            }
+            try {
+                encode(command);
+            } catch (IllegalArgumentException e) {
+                future.completeExceptionally(e);
+                return future;
+            }
+            try {
+                pending.add(future);
+                while (commandBuffer.hasRemaining()) {
+                    channel.write(commandBuffer);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        return future;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Returns the number of commands sent and not answered yet.
+     */
+    synchronized int getInFlight() {
+        return pending.size();
+    }
+
+    /**
+     * Writes the command and its line terminator into the reusable command buffer.
+     */
+    private void encode(String command) {
+        commandBuffer.clear();
+        if (command.length() > RemoteCameraClient.MAX_COMMAND_LENGTH) {
+            throw new IllegalArgumentException("Command longer than " + RemoteCameraClient.MAX_COMMAND_LENGTH + " characters");
+        }
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (c >= 0x80 || c == '\n' || c == '\r') {
+                throw new IllegalArgumentException("Commands must be single-line ASCII");
+            }
+            commandBuffer.put((byte) c);
+        }
+        commandBuffer.put((byte) '\n');
+        commandBuffer.flip();
+    }
+
+    private void readReplies() {
+        try {
+            while (open) {
+                Reply reply = decoder.readReply();
+                CompletableFuture<Reply> future;
+                synchronized (this) {
+                    future = pending.poll();
+                }
+                if (future == null) {
+                    throw new IOException("Reply without a pending command");
+                }
+                future.complete(reply);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Closes the connection and fails every pending command. Must hold the lock.
+     */
+    private void fail(IOException cause) {
+        open = false;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+        CompletableFuture<Reply> future;
+        while ((future = pending.poll()) != null) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (open) {
+            fail(new IOException("Connection closed"));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.remoteclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client for the remote camera server that keeps a pool of persistent connections.
+ * Each connection is switched to KEEPALIVE mode once and then carries any number of commands,
+ * pipelined up to the configured depth. A connection that fails or is closed by the server
+ * (e.g. after its keep-alive timeout) is replaced on the next command; a command sent while the
+ * server is closing an idle connection fails with an IOException and can simply be sent again.
+ * Thread-safe; send() may be called from any number of threads.
+ *
+ * <pre>
+ * try (RemoteCameraClient client = new RemoteCameraClient("10.0.0.5", 8888, 2, 8, Paths.get("images"))) {
+ *     Reply props = client.call("GET_PROP");
+ *     CompletableFuture&lt;Reply&gt; photo = client.send("TAKE_PHOTO front");
+ * }
+ * </pre>
+ */
+public class RemoteCameraClient implements Closeable {
+
+    public static final int DEFAULT_PORT = 8888;
+    public static final int DEFAULT_POOL_SIZE = 2;            // the server accepts 4 connections at once by default
+    public static final int DEFAULT_PIPELINE_DEPTH = 8;
+    public static final int CONNECT_TIMEOUT_MS = 5000;
+    static final int MAX_COMMAND_LENGTH = 256;                // the server rejects longer lines
+    static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final InetSocketAddress address;
+    private final int pipelineDepth;
+    private final Path imageDirectory;
+    private final PooledConnection[] connections;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong imageCounter = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates a client with the default pool size and pipeline depth that discards images.
+     */
+    public RemoteCameraClient(String host, int port) {
+        this(host, port, DEFAULT_POOL_SIZE, DEFAULT_PIPELINE_DEPTH, null);
+    }
+
+    /**
+     * Creates a client. Connections are opened on first use.
+     *
+     * @param host The server address.
+     * @param port The server port.
+     * @param poolSize Number of persistent connections; keep it below the server's connection limit.
+     * @param pipelineDepth Maximum number of unanswered commands per connection.
+     * @param imageDirectory Where received images are written, or null to discard them.
+     */
+    public RemoteCameraClient(String host, int port, int poolSize, int pipelineDepth, Path imageDirectory) {
+        if (poolSize < 1 || pipelineDepth < 1) {
+            throw new IllegalArgumentException("poolSize and pipelineDepth must be at least 1");
+        }
+        this.address = new InetSocketAddress(host, port);
+        this.pipelineDepth = pipelineDepth;
+        this.imageDirectory = imageDirectory;
+        this.connections = new PooledConnection[poolSize];
+    }
+
+    /**
+     * Sends a command on the next connection of the pool, opening or replacing it if needed.
+     * Blocks while that connection's pipeline is full.
+     *
+     * @param command The command line, e.g. "TAKE_PHOTO front".
+     * @return Completed with the reply (which may be an ERROR reply), or exceptionally if the connection fails.
+     * @throws IOException If no connection could be opened.
+     */
+    public CompletableFuture<Reply> send(String command) throws IOException, InterruptedException {
+        int slot = Math.floorMod(next.getAndIncrement(), connections.length);
+        return connection(slot).send(command);
+    }
+
+    /**
+     * Sends a command and waits for its reply.
+     *
+     * @throws IOException If the connection fails before the reply arrives.
+     */
+    public Reply call(String command) throws IOException, InterruptedException {
+        try {
+            return send(command).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Opens every connection of the pool now instead of on first use.
+     */
+    public void connectAll() throws IOException {
+        for (int i = 0; i < connections.length; i++) {
+            connection(i);
+        }
+    }
+
+    private PooledConnection connection(int slot) throws IOException {
+        synchronized (connections) {
+            if (closed) {
+                throw new IOException("Client closed");
+            }
+            PooledConnection connection = connections[slot];
+            if (connection == null || !connection.isOpen()) {
+                connection = new PooledConnection(address, CONNECT_TIMEOUT_MS, pipelineDepth, imageDirectory, imageCounter);
+                connections[slot] = connection;
+            }
+            return connection;
+        }
+    }
+
+    /**
+     * Closes every connection; commands still in flight fail.
+     */
+    @Override
+    public void close() {
+        synchronized (connections) {
+            closed = true;
+            for (PooledConnection connection : connections) {
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.remoteclient;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The server's complete answer to one command: any number of FRAME / UNCHANGED responses
+ * (streams and batches) followed by exactly one TEXT, ERROR or IMAGE response.
+ */
+public class Reply {
+
+    /** Response types of the wire protocol, in the server's order. */
+    public enum Type {
+        TEXT,
+        IMAGE,
+        ERROR,
+        FRAME,
+        UNCHANGED
+    }
+
+    /** One FRAME or UNCHANGED response of a stream or batch. */
+    public static class Frame {
+        /** The capture ID, or for an unchanged frame the ID of the previously sent capture it matches. */
+        public final long captureId;
+        /** Where the image was written, or null for an unchanged frame or when images are discarded. */
+        public final Path file;
+        public final boolean unchanged;
+        public final long bytes;
+
+        Frame(long captureId, Path file, boolean unchanged, long bytes) {
+            this.captureId = captureId;
+            this.file = file;
+            this.unchanged = unchanged;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Type type;
+    private final String text;
+    private final Path imageFile;
+    private final List<Frame> frames;
+    private final long bytes;
+
+    Reply(Type type, String text, Path imageFile, List<Frame> frames, long bytes) {
+        this.type = type;
+        this.text = text;
+        this.imageFile = imageFile;
+        this.frames = frames != null ? frames : Collections.<Frame>emptyList();
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the type of the final response (TEXT, ERROR or IMAGE).
+     */
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isError() {
+        return type == Type.ERROR;
+    }
+
+    /**
+     * Returns the text of a TEXT or ERROR response, null for IMAGE.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns where the image of an IMAGE response was written, or null.
+     */
+    public Path getImageFile() {
+        return imageFile;
+    }
+
+    /**
+     * Returns the frames received before the final response, oldest first.
+     */
+    public List<Frame> getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of payload bytes (text and images) received for this command.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
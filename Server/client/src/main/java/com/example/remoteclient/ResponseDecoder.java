@@ -0,0 +1,225 @@
+package com.example.remoteclient;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes the server's framing ("TYPE\n", then "LENGTH\n" and the payload; FRAME and UNCHANGED
+ * carry a capture ID line first) from a blocking socket channel.
+ * One decoder per connection; its read buffer and line buffer are allocated once and reused
+ * for every response. Images go from the socket into the file with FileChannel.transferFrom,
+ * without passing through a Java byte array.
+ * Not thread-safe: use it from the connection's reader thread only.
+ */
+class ResponseDecoder {
+
+    private static final Reply.Type[] TYPES = Reply.Type.values();
+    private static final byte[][] TYPE_NAMES = new byte[TYPES.length][];
+    static {
+        for (Reply.Type type : TYPES) {
+            TYPE_NAMES[type.ordinal()] = type.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final SocketChannel channel;
+    private final Path imageDirectory;
+    private final AtomicLong imageCounter;
+    private final ByteBuffer buffer;
+    private byte[] line = new byte[32];
+    private int lineLength;
+    private byte[] text = new byte[4096];
+
+    /**
+     * @param channel The connection, in blocking mode.
+     * @param imageDirectory Where images are written, or null to discard them.
+     * @param imageCounter Numbers the IMAGE files written by all connections of a client.
+     * @param bufferSize Size of the read buffer.
+     */
+    ResponseDecoder(SocketChannel channel, Path imageDirectory, AtomicLong imageCounter, int bufferSize) {
+        this.channel = channel;
+        this.imageDirectory = imageDirectory;
+        this.imageCounter = imageCounter;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.flip();  // empty, in read mode
+    }
+
+    /**
+     * Reads the complete reply to one command.
+     *
+     * @throws EOFException If the server closed the connection.
+     * @throws IOException If the stream is malformed or the read fails.
+     */
+    Reply readReply() throws IOException {
+        List<Reply.Frame> frames = null;
+        long bytes = 0;
+        while (true) {
+            Reply.Type type = readType();
+            if (type == Reply.Type.FRAME || type == Reply.Type.UNCHANGED) {
+                if (frames == null) {
+                    frames = new ArrayList<>();
+                }
+                long captureId = readNumber();
+                if (type == Reply.Type.UNCHANGED) {
+                    frames.add(new Reply.Frame(captureId, null, true, 0));
+                    continue;
+                }
+                long length = readNumber();
+                Path file = length > 0 && imageDirectory != null ? imageDirectory.resolve("capture_" + captureId + ".jpg") : null;
+                readPayload(file, length);
+                frames.add(new Reply.Frame(captureId, file, false, length));
+                bytes += length;
+            } else if (type == Reply.Type.IMAGE) {
+                long length = readNumber();
+                Path file = length > 0 && imageDirectory != null
+                        ? imageDirectory.resolve("image_" + imageCounter.incrementAndGet() + ".jpg") : null;
+                readPayload(file, length);
+                return new Reply(type, null, file, frames, bytes + length);
+            } else {
+                int length = (int) readNumber();
+                return new Reply(type, readText(length), null, frames, bytes + length);
+            }
+        }
+    }
+
+    private Reply.Type readType() throws IOException {
+        readLine();
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            byte[] name = TYPE_NAMES[i];
+            if (name.length == lineLength && regionMatches(name)) {
+                return TYPES[i];
+            }
+        }
+        throw new IOException("Unknown response type: " + new String(line, 0, lineLength, StandardCharsets.US_ASCII));
+    }
+
+    private boolean regionMatches(byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (line[i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long readNumber() throws IOException {
+        readLine();
+        if (lineLength == 0) {
+            throw new IOException("Empty number line");
+        }
+        long value = 0;
+        for (int i = 0; i < lineLength; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Invalid number: " + new String(line, 0, lineLength, StandardCharsets.US_ASCII));
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Reads one line into {@link #line}, without its terminator ("\n" or "\r\n").
+     */
+    private void readLine() throws IOException {
+        lineLength = 0;
+        while (true) {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                        lineLength--;
+                    }
+                    return;
+                }
+                if (lineLength == line.length) {
+                    if (line.length >= 1024) {
+                        throw new IOException("Header line too long");
+                    }
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLength++] = b;
+            }
+            fill();
+        }
+    }
+
+    private String readText(int length) throws IOException {
+        if (text.length < length) {
+            text = new byte[Math.max(length, text.length * 2)];
+        }
+        int read = 0;
+        while (read < length) {
+            if (!buffer.hasRemaining()) {
+                fill();
+            }
+            int chunk = Math.min(buffer.remaining(), length - read);
+            buffer.get(text, read, chunk);
+            read += chunk;
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Moves an image payload into the file, or skips it if file is null.
+     * Bytes already in the read buffer are written first; the rest is transferred from the socket.
+     */
+    private void readPayload(Path file, long length) throws IOException {
+        if (file == null) {
+            skip(length);
+            return;
+        }
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = 0;
+            if (buffer.hasRemaining()) {
+                int limit = buffer.limit();
+                buffer.limit(buffer.position() + (int) Math.min(buffer.remaining(), length));
+                while (buffer.hasRemaining()) {
+                    written += out.write(buffer);
+                }
+                buffer.limit(limit);
+            }
+            while (written < length) {
+                long transferred = out.transferFrom(channel, written, length - written);
+                if (transferred <= 0) {
+                    throw new EOFException("Connection closed in the middle of an image");
+                }
+                written += transferred;
+            }
+        }
+    }
+
+    private void skip(long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            if (!buffer.hasRemaining()) {
+                fill();
+            }
+            int chunk = (int) Math.min(buffer.remaining(), remaining);
+            buffer.position(buffer.position() + chunk);
+            remaining -= chunk;
+        }
+    }
+
+    /**
+     * Refills the empty read buffer from the socket.
+     */
+    private void fill() throws IOException {
+        buffer.clear();
+        int read = channel.read(buffer);
+        buffer.flip();
+        if (read < 0) {
+            throw new EOFException("Connection closed by the server");
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.remoteclient;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal stand-in for the device server, speaking the same wire protocol, so the client and the
+ * load generator can be exercised on a plain JVM without a phone. It answers KEEPALIVE, GET_PROP,
+ * STATS, TAKE_PHOTO (with a fixed in-memory image) and FETCH (a frame, an unchanged frame and another
+ * frame, then the summary TEXT, like a FETCH batch of the real server); anything else gets an ERROR.
+ * CLOSE makes it close the connection without answering, like a server that went away.
+ * Like the real server, a connection is closed after one response unless it sent KEEPALIVE.
+ */
+public class StandInServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "StandInServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final byte[] image;
+    private final byte[] props;
+
+    /**
+     * Starts listening on a free local port.
+     *
+     * @param imageBytes Size of the image returned by TAKE_PHOTO.
+     */
+    public StandInServer(int imageBytes) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.image = new byte[imageBytes];
+        new Random(42).nextBytes(image);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            builder.append("ro.stand_in.property_").append(i).append(": value_").append(i).append('\n');
+        }
+        this.props = builder.toString().getBytes(StandardCharsets.UTF_8);
+        executor.execute(this::acceptLoop);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the image sent by TAKE_PHOTO and in every FETCH frame.
+     */
+    public byte[] getImage() {
+        return image.clone();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                clients.add(socket);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), 64 * 1024);
+            StringBuilder line = new StringBuilder();
+            boolean keepAlive = false;
+            while (true) {
+                line.setLength(0);
+                int b;
+                while ((b = in.read()) != -1 && b != '\n') {
+                    line.append((char) b);
+                }
+                if (b == -1) {
+                    return;
+                }
+                String command = line.toString().trim();
+                if (command.equals("KEEPALIVE")) {
+                    keepAlive = true;
+                    write(out, "TEXT", "keepalive".getBytes(StandardCharsets.UTF_8));
+                } else if (command.equals("GET_PROP")) {
+                    write(out, "TEXT", props);
+                } else if (command.equals("STATS")) {
+                    write(out, "TEXT", "active: 1\n".getBytes(StandardCharsets.UTF_8));
+                } else if (command.startsWith("TAKE_PHOTO")) {
+                    write(out, "IMAGE", image);
+                } else if (command.startsWith("FETCH")) {
+                    writeFrame(out, 1, image);
+                    out.write("UNCHANGED\n1\n".getBytes(StandardCharsets.US_ASCII));
+                    writeFrame(out, 3, image);
+                    write(out, "TEXT", "3 frame(s), 1 unchanged, last=3".getBytes(StandardCharsets.UTF_8));
+                } else if (command.equals("CLOSE")) {
+                    out.flush();
+                    return;
+                } else {
+                    write(out, "ERROR", ("Unknown command: " + command).getBytes(StandardCharsets.UTF_8));
+                }
+                // Flush once the pipelined commands already received are answered.
+                if (in.available() == 0) {
+                    out.flush();
+                }
+                if (!keepAlive) {
+                    out.flush();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    private static void write(OutputStream out, String type, byte[] payload) throws IOException {
+        out.write((type + "\n" + payload.length + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+    }
+
+    private static void writeFrame(OutputStream out, long captureId, byte[] payload) throws IOException {
+        out.write(("FRAME\n" + captureId + "\n" + payload.length + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+    }
+
+    /**
+     * Stops accepting and closes every open connection.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket client : clients) {
+            client.close();
+        }
+        executor.shutdownNow();
+    }
+}
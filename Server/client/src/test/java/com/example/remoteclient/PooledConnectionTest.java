@@ -0,0 +1,112 @@
+package com.example.remoteclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pipelines commands over one keep-alive connection to a StandInServer.
+ */
+public class PooledConnectionTest {
+
+    private StandInServer server;
+    private PooledConnection connection;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandInServer(20000);
+        connection = new PooledConnection(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()),
+                RemoteCameraClient.CONNECT_TIMEOUT_MS, 4, null, new AtomicLong());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        connection.close();
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void pipelinedRepliesCompleteInCommandOrder() throws Exception {
+        // More commands than the pipeline depth, so send() also waits for the window.
+        List<CompletableFuture<Reply>> replies = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            replies.add(connection.send(command(i)));
+        }
+        for (int i = 0; i < replies.size(); i++) {
+            Reply reply = replies.get(i).get(5, TimeUnit.SECONDS);
+            switch (i % 4) {
+                case 0:
+                    assertTrue(reply.getText().startsWith("ro.stand_in.property_0"));
+                    break;
+                case 1:
+                    assertEquals("active: 1\n", reply.getText());
+                    break;
+                case 2:
+                    assertEquals(Reply.Type.IMAGE, reply.getType());
+                    assertEquals(20000, reply.getBytes());
+                    break;
+                default:
+                    assertTrue(reply.isError());
+                    assertEquals("Unknown command: " + command(i), reply.getText());
+            }
+        }
+        assertEquals(0, connection.getInFlight());
+        assertTrue(connection.isOpen());
+    }
+
+    @Test(timeout = 10000)
+    public void serverClosingFailsPendingCommands() throws Exception {
+        assertEquals("active: 1\n", connection.send("STATS").get(5, TimeUnit.SECONDS).getText());
+
+        CompletableFuture<Reply> close = connection.send("CLOSE");
+        CompletableFuture<Reply> after = connection.send("STATS");
+        assertFailsWithIOException(close);
+        assertFailsWithIOException(after);
+        assertFalse(connection.isOpen());
+        assertEquals(0, connection.getInFlight());
+
+        assertFailsWithIOException(connection.send("STATS"));
+    }
+
+    @Test(timeout = 10000)
+    public void invalidCommandFailsAloneAndKeepsTheConnection() throws Exception {
+        CompletableFuture<Reply> invalid = connection.send("STATS\nGET_PROP");
+        try {
+            invalid.get(5, TimeUnit.SECONDS);
+            fail("a multi-line command must not be sent");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals("active: 1\n", connection.send("STATS").get(5, TimeUnit.SECONDS).getText());
+    }
+
+    private static String command(int i) {
+        switch (i % 4) {
+            case 0: return "GET_PROP";
+            case 1: return "STATS";
+            case 2: return "TAKE_PHOTO";
+            default: return "NOPE_" + i;
+        }
+    }
+
+    private static void assertFailsWithIOException(CompletableFuture<Reply> reply) throws Exception {
+        try {
+            reply.get(5, TimeUnit.SECONDS);
+            fail("expected the command to fail");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.remoteclient;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decodes the replies of a StandInServer, which writes the same framing as the device server.
+ */
+public class ResponseDecoderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StandInServer server;
+    private SocketChannel channel;
+
+    @After
+    public void tearDown() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void textAndErrorReplies() throws IOException {
+        ResponseDecoder decoder = connect(1000, RemoteCameraClient.READ_BUFFER_SIZE, null);
+        send("KEEPALIVE", "GET_PROP", "NOPE");
+
+        Reply keepAlive = decoder.readReply();
+        assertEquals(Reply.Type.TEXT, keepAlive.getType());
+        assertEquals("keepalive", keepAlive.getText());
+
+        Reply props = decoder.readReply();
+        assertEquals(Reply.Type.TEXT, props.getType());
+        assertTrue(props.getText().startsWith("ro.stand_in.property_0: value_0\n"));
+        assertEquals(props.getText().getBytes(StandardCharsets.UTF_8).length, props.getBytes());
+        assertTrue(props.getFrames().isEmpty());
+
+        Reply error = decoder.readReply();
+        assertTrue(error.isError());
+        assertEquals("Unknown command: NOPE", error.getText());
+    }
+
+    @Test(timeout = 10000)
+    public void imageIsWrittenToFile() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        ResponseDecoder decoder = connect(300 * 1024, RemoteCameraClient.READ_BUFFER_SIZE, directory);
+        send("KEEPALIVE", "TAKE_PHOTO", "STATS");
+
+        decoder.readReply();
+        Reply photo = decoder.readReply();
+        assertEquals(Reply.Type.IMAGE, photo.getType());
+        assertNull(photo.getText());
+        assertEquals(300 * 1024, photo.getBytes());
+        assertArrayEquals(server.getImage(), Files.readAllBytes(photo.getImageFile()));
+
+        assertEquals("active: 1\n", decoder.readReply().getText());
+    }
+
+    @Test(timeout = 10000)
+    public void framesAndUnchangedFramesPrecedeTheFinalText() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        ResponseDecoder decoder = connect(5000, RemoteCameraClient.READ_BUFFER_SIZE, directory);
+        send("KEEPALIVE", "FETCH 1", "STATS");
+
+        decoder.readReply();
+        Reply batch = decoder.readReply();
+        assertEquals(Reply.Type.TEXT, batch.getType());
+        assertEquals("3 frame(s), 1 unchanged, last=3", batch.getText());
+        assertEquals(3, batch.getFrames().size());
+        assertEquals(2 * 5000 + batch.getText().length(), batch.getBytes());
+
+        Reply.Frame first = batch.getFrames().get(0);
+        assertEquals(1, first.captureId);
+        assertFalse(first.unchanged);
+        assertEquals(5000, first.bytes);
+        assertArrayEquals(server.getImage(), Files.readAllBytes(first.file));
+
+        Reply.Frame unchanged = batch.getFrames().get(1);
+        assertEquals(1, unchanged.captureId);
+        assertTrue(unchanged.unchanged);
+        assertNull(unchanged.file);
+        assertEquals(0, unchanged.bytes);
+
+        Reply.Frame third = batch.getFrames().get(2);
+        assertEquals(3, third.captureId);
+        assertArrayEquals(server.getImage(), Files.readAllBytes(third.file));
+
+        assertEquals("active: 1\n", decoder.readReply().getText());
+    }
+
+    @Test(timeout = 10000)
+    public void payloadsSplitAcrossBufferRefills() throws IOException {
+        // A 16 byte buffer splits every header line, text and image over several reads.
+        Path directory = folder.newFolder().toPath();
+        ResponseDecoder decoder = connect(10000, 16, directory);
+        send("KEEPALIVE", "GET_PROP", "FETCH 1", "TAKE_PHOTO", "STATS");
+
+        assertEquals("keepalive", decoder.readReply().getText());
+        assertTrue(decoder.readReply().getText().contains("ro.stand_in.property_39: value_39\n"));
+        Reply batch = decoder.readReply();
+        assertEquals(3, batch.getFrames().size());
+        assertArrayEquals(server.getImage(), Files.readAllBytes(batch.getFrames().get(2).file));
+        Reply photo = decoder.readReply();
+        assertArrayEquals(server.getImage(), Files.readAllBytes(photo.getImageFile()));
+        assertEquals("active: 1\n", decoder.readReply().getText());
+    }
+
+    @Test(timeout = 10000)
+    public void discardedPayloadsSplitAcrossBufferRefills() throws IOException {
+        ResponseDecoder decoder = connect(10000, 16, null);
+        send("KEEPALIVE", "FETCH 1", "TAKE_PHOTO", "STATS");
+
+        decoder.readReply();
+        Reply batch = decoder.readReply();
+        assertEquals("3 frame(s), 1 unchanged, last=3", batch.getText());
+        assertNull(batch.getFrames().get(0).file);
+        Reply photo = decoder.readReply();
+        assertNull(photo.getImageFile());
+        assertEquals(10000, photo.getBytes());
+        assertEquals("active: 1\n", decoder.readReply().getText());
+    }
+
+    @Test(timeout = 10000)
+    public void zeroLengthImageKeepsTheStreamFramed() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        ResponseDecoder decoder = connect(0, RemoteCameraClient.READ_BUFFER_SIZE, directory);
+        send("KEEPALIVE", "TAKE_PHOTO", "FETCH 1", "STATS");
+
+        decoder.readReply();
+        Reply photo = decoder.readReply();
+        assertEquals(Reply.Type.IMAGE, photo.getType());
+        assertEquals(0, photo.getBytes());
+        assertNull(photo.getImageFile());
+
+        Reply batch = decoder.readReply();
+        assertEquals(3, batch.getFrames().size());
+        assertNull(batch.getFrames().get(0).file);
+        assertEquals(0, batch.getFrames().get(0).bytes);
+
+        assertEquals("active: 1\n", decoder.readReply().getText());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test(timeout = 10000, expected = EOFException.class)
+    public void serverClosingTheConnectionIsEndOfFile() throws IOException {
+        ResponseDecoder decoder = connect(1000, RemoteCameraClient.READ_BUFFER_SIZE, null);
+        send("KEEPALIVE", "CLOSE");
+
+        decoder.readReply();
+        decoder.readReply();
+    }
+
+    private ResponseDecoder connect(int imageBytes, int bufferSize, Path imageDirectory) throws IOException {
+        server = new StandInServer(imageBytes);
+        channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+        return new ResponseDecoder(channel, imageDirectory, new AtomicLong(), bufferSize);
+    }
+
+    private void send(String... commands) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((String.join("\n", commands) + "\n").getBytes(StandardCharsets.US_ASCII));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
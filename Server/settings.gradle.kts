@@ -21,4 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "remoteApp"
 include(":app")
+include(":client")
  
\ No newline at end of file